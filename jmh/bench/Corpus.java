@@ -0,0 +1,134 @@
+package bench;
+
+import java.util.Random;
+
+/**
+ * Synthetic, syntactically valid programs of a given size, each stressing one part of the lexer
+ * or parser. The same size always gives the same text, so results of different runs compare.
+ */
+public enum Corpus {
+    /**
+     * Mostly line and block comments, with a statement now and then.
+     */
+    COMMENTS {
+        @Override
+        void append(StringBuilder out, Random random) {
+            int kind = random.nextInt(4);
+            if (kind == 0) {
+                out.append("/*\n");
+                for (int i = random.nextInt(6); i >= 0; i--) {
+                    out.append(" * ").append(words(random, 10)).append('\n');
+                }
+                out.append(" */\n");
+            } else if (kind == 1) {
+                out.append("x = x + 1; // ").append(words(random, 6)).append('\n');
+            } else {
+                out.append("// ").append(words(random, 12)).append('\n');
+            }
+        }
+    },
+    /**
+     * Declarations and prints of long string literals.
+     */
+    STRINGS {
+        @Override
+        void append(StringBuilder out, Random random) {
+            if (random.nextBoolean()) {
+                out.append("string s").append(random.nextInt(1000)).append(" = \"")
+                        .append(words(random, 16)).append("\";\n");
+            } else {
+                out.append("print(\"").append(words(random, 8)).append("\" + s")
+                        .append(random.nextInt(1000)).append(" + \"").append(words(random, 4)).append("\");\n");
+            }
+        }
+    },
+    /**
+     * Assignments of expressions nested a thousand levels deep: parentheses, unary operators,
+     * indexes and calls around chains of binary operators.
+     */
+    DEEP_EXPRESSIONS {
+        private static final String[] OPERATORS = {"||", "&&", "==", "!=", "<", ">=", "+", "-", "*", "/"};
+
+        @Override
+        void append(StringBuilder out, Random random) {
+            out.append("x = ");
+            StringBuilder closers = new StringBuilder();
+            for (int depth = 0; depth < 1000; depth++) {
+                switch (random.nextInt(5)) {
+                    case 0 -> {
+                        out.append('(');
+                        closers.append(')');
+                    }
+                    case 1 -> out.append(random.nextBoolean() ? "- " : "! ");
+                    case 2 -> {
+                        out.append("arr[");
+                        closers.append(']');
+                    }
+                    case 3 -> {
+                        out.append("f(a, ");
+                        closers.append(')');
+                    }
+                    default -> {
+                        out.append('b').append(random.nextInt(10)).append(' ')
+                                .append(OPERATORS[random.nextInt(OPERATORS.length)]).append(" (");
+                        closers.append(')');
+                    }
+                }
+            }
+            out.append('1').append(closers.reverse()).append(";\n");
+        }
+    },
+    /**
+     * An ordinary program: functions, control flow, declarations and comments, meant to be
+     * generated a few megabytes long.
+     */
+    LARGE_FILE {
+        @Override
+        void append(StringBuilder out, Random random) {
+            int n = random.nextInt(1000);
+            out.append("// ").append(words(random, 5)).append('\n')
+                    .append("function int f").append(n).append("(int a, bool b) {\n")
+                    .append("    int total = 0;\n")
+                    .append("    string label = \"").append(words(random, 3)).append("\";\n")
+                    .append("    for (i = 0; i < a; i = i + 1) {\n")
+                    .append("        if (b && (i * 2 >= a || !done(i))) {\n")
+                    .append("            total = total + values[i] * ").append(n).append(";\n")
+                    .append("        } else {\n")
+                    .append("            print(label + \" \" + i);\n")
+                    .append("        }\n")
+                    .append("    }\n")
+                    .append("    /* ").append(words(random, 8)).append(" */\n")
+                    .append("    while (total > 100) { total = total / 2; }\n")
+                    .append("    switch (total) { case 1: return 1; default: break; }\n")
+                    .append("    return total;\n")
+                    .append("}\n");
+        }
+    };
+
+    private static final String[] WORDS = {
+            "lorem", "ipsum", "dolor", "sit", "amet", "token", "parser", "highlight", "value", "index"
+    };
+
+    abstract void append(StringBuilder out, Random random);
+
+    /**
+     * At least chars characters of this shape, ending with a complete statement.
+     */
+    public String generate(int chars) {
+        Random random = new Random(42);
+        StringBuilder out = new StringBuilder(chars + 8192);
+        while (out.length() < chars) {
+            append(out, random);
+        }
+        return out.toString();
+    }
+
+    private static String words(Random random, int count) {
+        StringBuilder out = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) out.append(' ');
+            out.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,32 @@
+package bench;
+
+import lexer.Lexer;
+import model.TokenBuffer;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * A generated program of each Corpus shape and its tokens, shared by the threads of a benchmark.
+ * The large file is LARGE_FACTOR times the size parameter, enough for the lexer to go parallel.
+ */
+@State(Scope.Benchmark)
+public class CorpusInput {
+    static final int LARGE_FACTOR = 16;
+
+    @Param({"COMMENTS", "STRINGS", "DEEP_EXPRESSIONS", "LARGE_FILE"})
+    public Corpus corpus;
+
+    @Param("262144")
+    public int size;
+
+    public String text;
+    public TokenBuffer tokens;
+
+    @Setup
+    public void generate() {
+        text = corpus.generate(corpus == Corpus.LARGE_FILE ? size * LARGE_FACTOR : size);
+        tokens = new Lexer().tokenizeToBuffer(text);
+    }
+}
@@ -0,0 +1,34 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import ui.HighlightFixture;
+
+import javax.swing.text.BadLocationException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The editor's highlight path against a headless StyledDocument: the whole document, as after
+ * opening a file, and a typed and deleted character.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class HighlightBenchmark {
+    @Benchmark
+    public int highlight(HighlightFixture fixture) {
+        return fixture.highlightAll();
+    }
+
+    @Benchmark
+    public int highlightEdit(HighlightFixture fixture) throws BadLocationException {
+        return fixture.typeAndDelete();
+    }
+}
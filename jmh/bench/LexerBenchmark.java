@@ -0,0 +1,40 @@
+package bench;
+
+import lexer.Lexer;
+import model.TokenBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tokenize throughput over each corpus: the buffer the editor keeps, and the sink path that
+ * allocates nothing per token.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LexerBenchmark {
+    private final Lexer lexer = new Lexer();
+
+    @Benchmark
+    public TokenBuffer tokenize(CorpusInput input) {
+        return lexer.tokenizeToBuffer(input.text);
+    }
+
+    @Benchmark
+    public void tokenizeToSink(CorpusInput input, Blackhole blackhole) {
+        lexer.tokenize(input.text, (type, kind, start, end) -> blackhole.consume(end));
+    }
+}
@@ -0,0 +1,42 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import parser.Ast;
+import parser.Diagnostic;
+import parser.Parser;
+import parser.SyntaxTree;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parse throughput over the tokens of each corpus: the checking parse, the AST and the syntax
+ * tree the editor keeps for incremental parsing.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+    @Benchmark
+    public List<Diagnostic> parse(CorpusInput input) {
+        return new Parser(input.tokens).parseWithRecovery();
+    }
+
+    @Benchmark
+    public Ast ast(CorpusInput input) {
+        return new Parser(input.tokens).parseToAst();
+    }
+
+    @Benchmark
+    public SyntaxTree syntaxTree(CorpusInput input) {
+        return SyntaxTree.parse(input.tokens);
+    }
+}
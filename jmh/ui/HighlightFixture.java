@@ -0,0 +1,88 @@
+package ui;
+
+import bench.Corpus;
+import lexer.Lexer;
+import lexer.TokenChange;
+import model.TokenType;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import javax.swing.text.BadLocationException;
+import javax.swing.text.DefaultStyledDocument;
+import javax.swing.text.Style;
+import javax.swing.text.StyleConstants;
+import javax.swing.text.StyleContext;
+import java.awt.Color;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * The editor's styled document on a PieceTableContent, without a text pane, coloured the way
+ * HighlightEngine colours it: the tokens relexed from a snapshot of the content are diffed
+ * against the style runs last applied and the changed runs are written in slices. It lives in
+ * package ui to reach StyleRuns and the engine; the document model is much slower than lexing,
+ * so every corpus gets a document of the size parameter's chars.
+ */
+@State(Scope.Thread)
+public class HighlightFixture {
+    @Param({"COMMENTS", "STRINGS", "DEEP_EXPRESSIONS", "LARGE_FILE"})
+    public Corpus corpus;
+
+    @Param("262144")
+    public int size;
+
+    private PieceTableContent content;
+    private DefaultStyledDocument document;
+    private final Map<TokenType, Style> styles = new HashMap<>();
+    private final Lexer lexer = new Lexer();
+    // Runs last applied to the document
+    private StyleRuns applied = new StyleRuns();
+    private final Random random = new Random(7);
+
+    @Setup
+    public void setUp() throws BadLocationException {
+        content = new PieceTableContent();
+        document = new DefaultStyledDocument(content, new StyleContext());
+        for (TokenType type : TokenType.values()) {
+            if (type == TokenType.WHITESPACE) continue;
+            Style style = document.addStyle(type.name(), null);
+            StyleConstants.setForeground(style, new Color(type.ordinal() * 40 % 256, 0, 128));
+            styles.put(type, style);
+        }
+        document.insertString(0, corpus.generate(size), null);
+        highlightAll();
+    }
+
+    /**
+     * Lexes the whole document and writes every run, as after opening a file; returns the number
+     * of runs written.
+     */
+    public int highlightAll() {
+        lexer.reset("");
+        applied = new StyleRuns();
+        return highlight(0, 0, document.getLength());
+    }
+
+    /**
+     * Types a character at a random offset and deletes it again, highlighting after each; returns
+     * the number of runs written.
+     */
+    public int typeAndDelete() throws BadLocationException {
+        int offset = random.nextInt(document.getLength() + 1);
+        document.insertString(offset, "x", null);
+        int written = highlight(offset, 0, 1);
+        document.remove(offset, 1);
+        return written + highlight(offset, 1, 0);
+    }
+
+    private int highlight(int offset, int removed, int inserted) {
+        TokenChange change = lexer.relex(content.snapshot(), offset, removed, inserted);
+        StyleRuns.Diff diff = applied.update(change, offset, removed, inserted);
+        applied = diff.runs;
+        HighlightEngine.applyAll(diff.changed, document, styles);
+        return diff.changed.size();
+    }
+}
@@ -0,0 +1,229 @@
+package cli;
+
+import lexer.Lexer;
+import model.TokenBuffer;
+import parser.Diagnostic;
+import parser.Parser;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+
+/**
+ * Command-line entry point that needs no display: lexes and parses every file under the given
+ * directories, each file on its own virtual thread, and writes the syntax errors to standard
+ * output as JSON lines, one object per error, in file order. With --html, every file is also
+ * written as highlighted HTML. A file that cannot be read, or that the lexer or parser fails on,
+ * gets a single {"file", "error"} object instead and counts as a failure; the other files go on.
+ * Files per second are reported on standard error at the end; the exit status is 1 if any file
+ * has errors or failed and 2 for bad arguments.
+ *
+ *     java -cp out cli.BatchLint [--html DIR] [--ext java,txt] [--jobs N] DIR...
+ */
+public class BatchLint {
+    private final List<String> extensions;
+    private final Path htmlDir;
+    // Files read and processed at once; the rest wait, so memory stays bounded
+    private final Semaphore permits;
+    private final int jobs;
+
+    BatchLint(List<String> extensions, Path htmlDir, int jobs) {
+        this.extensions = extensions;
+        this.htmlDir = htmlDir;
+        this.jobs = jobs;
+        this.permits = new Semaphore(jobs);
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        // The report is Turkish; the platform charset may not encode it
+        PrintStream err = new PrintStream(System.err, true, StandardCharsets.UTF_8);
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        System.exit(execute(args, out, err));
+    }
+
+    /**
+     * Runs the command with args, writing the JSON lines to out and the usage or the summary to
+     * err; returns the exit status.
+     */
+    static int execute(String[] args, Writer out, PrintStream err) throws IOException, InterruptedException {
+        List<String> extensions = List.of("java", "txt");
+        Path htmlDir = null;
+        int jobs = 2 * Runtime.getRuntime().availableProcessors();
+        List<Path> roots = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--html" -> htmlDir = Path.of(args[++i]);
+                    case "--ext" -> extensions = Arrays.asList(args[++i].split(","));
+                    case "--jobs" -> jobs = Math.max(1, Integer.parseInt(args[++i]));
+                    default -> roots.add(Path.of(args[i]));
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException ex) {
+            roots.clear();
+        }
+        if (roots.isEmpty()) {
+            err.println("Kullanım: BatchLint [--html DİZİN] [--ext java,txt] [--jobs N] DİZİN...");
+            return 2;
+        }
+
+        Summary summary = new BatchLint(extensions, htmlDir, jobs).run(roots, out);
+        out.flush();
+        err.println(summary);
+        return summary.diagnostics > 0 || summary.failures > 0 ? 1 : 0;
+    }
+
+    /**
+     * Lints the files under roots and writes their errors to out.
+     */
+    Summary run(List<Path> roots, Writer out) throws IOException, InterruptedException {
+        long started = System.nanoTime();
+        Summary summary = new Summary(jobs);
+        List<Path> rootOf = new ArrayList<>();
+        List<Path> files = new ArrayList<>();
+        for (Path root : roots) {
+            try (Stream<Path> walk = Files.walk(root)) {
+                walk.filter(Files::isRegularFile).filter(this::accepted).sorted().forEach(file -> {
+                    files.add(file);
+                    rootOf.add(root);
+                });
+            } catch (IOException | UncheckedIOException ex) {
+                out.write(Json.object(root, "error", ex.toString()));
+                summary.failures++;
+            }
+        }
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<Result>> results = new ArrayList<>(files.size());
+            for (int i = 0; i < files.size(); i++) {
+                Path file = files.get(i);
+                Path root = rootOf.get(i);
+                results.add(executor.submit(() -> lint(root, file)));
+            }
+            // Written in file order as soon as the files before have been
+            for (int i = 0; i < files.size(); i++) {
+                Result result;
+                try {
+                    result = results.get(i).get();
+                } catch (ExecutionException ex) {
+                    // A file that failed in an unforeseen way is reported like one that could not be read
+                    result = new Result(0, 0, true, Json.object(files.get(i), "error", ex.getCause().toString()));
+                }
+                out.write(result.json);
+                summary.add(result);
+            }
+        }
+        summary.nanos = System.nanoTime() - started;
+        return summary;
+    }
+
+    private boolean accepted(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot >= 0 && extensions.contains(name.substring(dot + 1));
+    }
+
+    private Result lint(Path root, Path file) throws InterruptedException {
+        permits.acquire();
+        try {
+            String text;
+            try {
+                // Malformed bytes become U+FFFD, as in the editor
+                text = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+            } catch (IOException ex) {
+                return new Result(0, 0, true, Json.object(file, "error", ex.toString()));
+            }
+
+            try {
+                return lint(root, file, text);
+            } catch (RuntimeException | StackOverflowError ex) {
+                // Reported as the file's error; the other files go on
+                return new Result(text.length(), 0, true, Json.object(file, "error", ex.toString()));
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private Result lint(Path root, Path file, String text) {
+        TokenBuffer tokens = new Lexer().tokenizeToBuffer(text);
+        List<Diagnostic> diagnostics = new Parser(tokens).parseWithRecovery();
+
+        StringBuilder json = new StringBuilder();
+        int line = 1;
+        int lineStart = 0;
+        int scanned = 0;
+        for (Diagnostic diagnostic : diagnostics) {
+            for (; scanned < diagnostic.start; scanned++) {
+                if (text.charAt(scanned) == '\n') {
+                    line++;
+                    lineStart = scanned + 1;
+                }
+            }
+            Json.diagnostic(json, file, line, diagnostic.start - lineStart + 1, diagnostic);
+        }
+
+        boolean failed = false;
+        if (htmlDir != null) {
+            try {
+                HtmlExport.write(htmlDir.resolve(relative(root, file) + ".html"), tokens, diagnostics);
+            } catch (IOException ex) {
+                json.append(Json.object(file, "error", ex.toString()));
+                failed = true;
+            }
+        }
+        return new Result(text.length(), diagnostics.size(), failed, json.toString());
+    }
+
+    private static String relative(Path root, Path file) {
+        return root.equals(file) ? file.getFileName().toString() : root.relativize(file).toString();
+    }
+
+    private record Result(long chars, int diagnostics, boolean failed, String json) {
+    }
+
+    static final class Summary {
+        final int jobs;
+        int files;
+        long chars;
+        int diagnostics;
+        int failures;
+        long nanos;
+
+        Summary(int jobs) {
+            this.jobs = jobs;
+        }
+
+        void add(Result result) {
+            files++;
+            chars += result.chars;
+            diagnostics += result.diagnostics;
+            if (result.failed) failures++;
+        }
+
+        @Override
+        public String toString() {
+            double seconds = Math.max(nanos, 1) / 1e9;
+            return String.format(Locale.ROOT,
+                    "%d dosya, %.1f M karakter, %d hata, %d başarısız; %.2f s, %.0f dosya/s, %.1f M karakter/s (%d çekirdek, %d eşzamanlı dosya)",
+                    files, chars / 1e6, diagnostics, failures, seconds, files / seconds, chars / 1e6 / seconds,
+                    Runtime.getRuntime().availableProcessors(), jobs);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package cli;
+
+import model.TokenBuffer;
+import model.TokenType;
+import parser.Diagnostic;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Writes a lexed file as a standalone HTML page: tokens colored as in the editor, syntax errors
+ * underlined with a wavy line and their message as a tooltip.
+ */
+final class HtmlExport {
+    // The editor's colors (SyntaxHighlighterGUI.TOKEN_COLORS)
+    private static final String STYLE = """
+            body { font: 13px monospace; white-space: pre; }
+            .KEYWORD { color: #0000c8; }
+            .IDENTIFIER { color: #008000; }
+            .NUMBER { color: #ff8c00; }
+            .OPERATOR { color: #ff0000; }
+            .SEPARATOR { color: #ff00ff; }
+            .UNKNOWN { color: #808080; }
+            .STRING { color: #c83278; }
+            .COMMENT { color: #808080; }
+            .error { text-decoration: underline wavy red; }
+            """;
+
+    private HtmlExport() {
+    }
+
+    static void write(Path target, TokenBuffer tokens, List<Diagnostic> diagnostics) throws IOException {
+        Files.createDirectories(target.toAbsolutePath().getParent());
+        try (Writer out = Files.newBufferedWriter(target, StandardCharsets.UTF_8)) {
+            out.write("<!DOCTYPE html>\n<html><head><meta charset=\"utf-8\"><style>\n");
+            out.write(STYLE);
+            out.write("</style></head><body>");
+            CharSequence source = tokens.source();
+            int next = 0;
+            for (int i = 0; i < tokens.size(); i++) {
+                // Errors are in order and start where their token does
+                while (next < diagnostics.size() && diagnostics.get(next).start < tokens.start(i)) next++;
+                Diagnostic error = next < diagnostics.size() && diagnostics.get(next).start == tokens.start(i)
+                        ? diagnostics.get(next) : null;
+                if (error != null) openError(out, error);
+                TokenType type = tokens.type(i);
+                boolean colored = type != TokenType.WHITESPACE;
+                if (colored) out.write("<span class=\"" + type + "\">");
+                escape(out, source, tokens.start(i), tokens.end(i));
+                if (colored) out.write("</span>");
+                if (error != null) out.write("</span>");
+            }
+            // Errors at the end of input get a blank to underline
+            for (; next < diagnostics.size(); next++) {
+                if (diagnostics.get(next).start < source.length()) continue;
+                openError(out, diagnostics.get(next));
+                out.write("&nbsp;</span>");
+            }
+            out.write("</body></html>\n");
+        }
+    }
+
+    private static void openError(Writer out, Diagnostic error) throws IOException {
+        out.write("<span class=\"error\" title=\"");
+        escape(out, error.message, 0, error.message.length());
+        out.write("\">");
+    }
+
+    private static void escape(Writer out, CharSequence text, int from, int to) throws IOException {
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '<' -> out.write("&lt;");
+                case '>' -> out.write("&gt;");
+                case '&' -> out.write("&amp;");
+                case '"' -> out.write("&quot;");
+                default -> out.write(c);
+            }
+        }
+    }
+}
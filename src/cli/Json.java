@@ -0,0 +1,57 @@
+package cli;
+
+import parser.Diagnostic;
+
+import java.nio.file.Path;
+
+/**
+ * The JSON lines BatchLint writes: {"file", "line", "column", "start", "end", "message"} for a
+ * syntax error, with 1-based line and column and 0-based char offsets, or {"file", "error"} for a
+ * file that could not be read or written.
+ */
+final class Json {
+    private Json() {
+    }
+
+    static void diagnostic(StringBuilder out, Path file, int line, int column, Diagnostic diagnostic) {
+        out.append("{\"file\":");
+        string(out, file.toString());
+        out.append(",\"line\":").append(line)
+                .append(",\"column\":").append(column)
+                .append(",\"start\":").append(diagnostic.start)
+                .append(",\"end\":").append(diagnostic.end)
+                .append(",\"message\":");
+        string(out, diagnostic.message);
+        out.append("}\n");
+    }
+
+    static String object(Path file, String key, String value) {
+        StringBuilder out = new StringBuilder("{\"file\":");
+        string(out, file.toString());
+        out.append(",\"").append(key).append("\":");
+        string(out, value);
+        return out.append("}\n").toString();
+    }
+
+    private static void string(StringBuilder out, String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+                }
+            }
+        }
+        out.append('"');
+    }
+}
@@ -1,155 +1,390 @@
 package lexer;
 
 import model.Token;
+import model.TokenBuffer;
+import model.TokenKind;
 import model.TokenType;
 
+import java.nio.CharBuffer;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
 
 public class Lexer {
 
-    private static final Set<String> keywords = Set.of(
-        "if", "else", "while", "function", "return", "break", "continue", "print",
-        "for", "do", "switch", "case", "default", "true", "false", "null",
-        "int", "bool", "string", "void"
-    );
+    // Checked every this many tokens while relexing in the background
+    private static final int CANCEL_CHECK_INTERVAL = 256;
+    // Texts (and edits) of at least this many characters are lexed on the common ForkJoinPool
+    private static final int PARALLEL_THRESHOLD = 2 * ParallelLexer.MIN_CHUNK;
+
+    // Token stream of the text last passed to reset() or commit(); never modified in place,
+    // so a background relex can keep reading it while a newer stream is committed
+    private volatile TokenBuffer tokens = new TokenBuffer("");
 
     public List<Token> tokenize(String input) {
-        List<Token> tokens = new ArrayList<>();
+        return tokenizeToBuffer(input).toList();
+    }
+
+    public TokenBuffer tokenizeToBuffer(CharSequence input) {
+        if (input.length() >= PARALLEL_THRESHOLD) return new ParallelLexer().tokenize(input);
+        TokenBuffer tokens = new TokenBuffer(input, Math.max(16, input.length() / 4));
+        tokenize(input, tokens::add);
+        return tokens;
+    }
+
+    /**
+     * Streams the tokens of input to sink without allocating anything per token.
+     */
+    public void tokenize(CharSequence input, TokenSink sink) {
         int position = 0;
+        int length = input.length();
 
-        while (position < input.length()) {
-            char current = input.charAt(position);
+        while (position < length) {
+            position = lexToken(input, position, length, sink);
+        }
+    }
 
-            // Whitespace
-            if (Character.isWhitespace(current)) {
-                int start = position;
-                while (position < input.length() && Character.isWhitespace(input.charAt(position))) {
-                    position++;
-                }
-                tokens.add(new Token(TokenType.WHITESPACE, input.substring(start, position), start, position));
-                continue;
-            }
+    /**
+     * Same as tokenize(CharSequence, TokenSink) over input[offset, offset + length);
+     * token offsets are relative to offset.
+     */
+    public void tokenize(char[] input, int offset, int length, TokenSink sink) {
+        tokenize(CharBuffer.wrap(input, offset, length).slice(), sink);
+    }
 
-            // Comments
-            if (current == '/' && position + 1 < input.length()) {
-                char next = input.charAt(position + 1);
+    /**
+     * Tokenizes the whole text and keeps the result as the state for later relex() calls.
+     */
+    public TokenBuffer reset(CharSequence text) {
+        tokens = tokenizeToBuffer(text);
+        return tokens;
+    }
 
-                // Single-line comment
-                if (next == '/') {
-                    int start = position;
-                    position += 2;
-                    StringBuilder comment = new StringBuilder("//");
+    public TokenBuffer getTokens() {
+        return tokens;
+    }
 
-                    while (position < input.length() && input.charAt(position) != '\n') {
-                        comment.append(input.charAt(position));
-                        position++;
-                    }
+    /**
+     * Relexes after an edit and commits the result right away.
+     */
+    public TokenChange relex(CharSequence text, int offset, int removedLength, int insertedLength) {
+        TokenChange change = relex(text, offset, removedLength, insertedLength, () -> false);
+        commit(change);
+        return change;
+    }
 
-                    tokens.add(new Token(TokenType.COMMENT, comment.toString(), start, position));
-                    continue;
-                }
+    /**
+     * Computes the token stream after a single edit without changing the kept state; pass the
+     * result to commit() to make it current.
+     *
+     * The lexer is always in its normal state at a token boundary; a comment or string that is
+     * still open at the start of a line is simply the token spanning that line start. So the
+     * nearest safe restart point before the edit is the token in front of the first damaged one,
+     * and relexing stops as soon as a new token starts where an old token started after the edit.
+     * Everything from there on is the old stream shifted by the length delta. The new stream
+     * shares the old one's storage for the tokens before and after the relexed span, so the
+     * result costs the relexed tokens plus one entry per storage segment, not a copy.
+     *
+     * @param text          full text after the edit
+     * @param offset        start of the edit
+     * @param removedLength number of characters removed at offset
+     * @param insertedLength number of characters inserted at offset
+     * @param cancelled     polled while relexing; the relex throws CancellationException once it returns true
+     */
+    public TokenChange relex(CharSequence text, int offset, int removedLength, int insertedLength,
+                             BooleanSupplier cancelled) {
+        TokenBuffer base = tokens;
+        int delta = insertedLength - removedLength;
+        int damageEnd = offset + insertedLength;
 
-                // Multi-line comment
-                if (next == '*') {
-                    int start = position;
-                    position += 2;
-                    StringBuilder comment = new StringBuilder("/*");
-
-                    while (position + 1 < input.length() && !(input.charAt(position) == '*' && input.charAt(position + 1) == '/')) {
-                        comment.append(input.charAt(position));
-                        position++;
-                    }
-
-                    if (position + 1 < input.length()) {
-                        comment.append("*/");
-                        position += 2;
-                    } else {
-                        // Unclosed comment
-                        tokens.add(new Token(TokenType.UNKNOWN, comment.toString(), start, position));
-                        continue;
-                    }
-
-                    tokens.add(new Token(TokenType.COMMENT, comment.toString(), start, position));
-                    continue;
+        // First token whose lookahead may have seen the edit, then one more for operator/comment merges
+        int from = base.firstEndingAfter(offset - 1);
+        if (from > 0) from--;
+        int position = from < base.size() ? base.start(from) : 0;
+
+        TokenBuffer relexed;
+        if (damageEnd - position >= PARALLEL_THRESHOLD) {
+            // Large insert (a paste, a file being loaded): lex the damaged span in parallel; the
+            // loop below carries on from there and resyncs as usual
+            relexed = new ParallelLexer().tokenize(text, position, damageEnd);
+            if (relexed.size() > 0) position = relexed.end(relexed.size() - 1);
+            if (cancelled.getAsBoolean()) throw new CancellationException();
+        } else {
+            relexed = new TokenBuffer(text);
+        }
+        TokenSink sink = relexed::add;
+        int resync = base.size();
+        int old = from;
+        while (position < text.length()) {
+            if (position >= damageEnd) {
+                int oldPosition = position - delta;
+                while (old < base.size() && base.start(old) < oldPosition) {
+                    old++;
+                }
+                if (old < base.size() && base.start(old) == oldPosition) {
+                    resync = old;
+                    break;
                 }
             }
+            if (relexed.size() % CANCEL_CHECK_INTERVAL == 0 && cancelled.getAsBoolean()) {
+                throw new CancellationException();
+            }
+            position = lexToken(text, position, text.length(), sink);
+        }
 
-            // Identifiers / Keywords
-            if (Character.isLetter(current)) {
-                int start = position;
-                while (position < input.length() &&
-                        (Character.isLetterOrDigit(input.charAt(position)) || input.charAt(position) == '_')) {
-                    position++;
+        TokenBuffer result = new TokenBuffer(text, from + relexed.size() + base.size() - resync);
+        result.addAll(base, 0, from, 0);
+        result.addAll(relexed, 0, relexed.size(), 0);
+        result.addAll(base, resync, base.size(), delta);
+
+        return new TokenChange(result, from, resync, from + relexed.size());
+    }
+
+    /**
+     * Makes the token stream of a relex() result the kept state.
+     */
+    public void commit(TokenChange change) {
+        tokens = change.tokens;
+    }
+
+    /**
+     * Recognises the keywords (see TokenKind) directly on the character range: the length and the
+     * first character pick at most one candidate, which is then compared char by char.
+     *
+     * @return the keyword's kind, or NONE for a plain identifier
+     */
+    static TokenKind keyword(CharSequence input, int start, int end) {
+        switch (end - start) {
+            case 2:
+                switch (input.charAt(start)) {
+                    case 'i': return rest(input, start, TokenKind.KW_IF);
+                    case 'd': return rest(input, start, TokenKind.KW_DO);
+                }
+                break;
+            case 3:
+                switch (input.charAt(start)) {
+                    case 'f': return rest(input, start, TokenKind.KW_FOR);
+                    case 'i': return rest(input, start, TokenKind.KW_INT);
+                }
+                break;
+            case 4:
+                switch (input.charAt(start)) {
+                    case 'e': return rest(input, start, TokenKind.KW_ELSE);
+                    case 'c': return rest(input, start, TokenKind.KW_CASE);
+                    case 't': return rest(input, start, TokenKind.KW_TRUE);
+                    case 'n': return rest(input, start, TokenKind.KW_NULL);
+                    case 'b': return rest(input, start, TokenKind.KW_BOOL);
+                    case 'v': return rest(input, start, TokenKind.KW_VOID);
+                }
+                break;
+            case 5:
+                switch (input.charAt(start)) {
+                    case 'w': return rest(input, start, TokenKind.KW_WHILE);
+                    case 'b': return rest(input, start, TokenKind.KW_BREAK);
+                    case 'p': return rest(input, start, TokenKind.KW_PRINT);
+                    case 'f': return rest(input, start, TokenKind.KW_FALSE);
                 }
-                String word = input.substring(start, position);
-                TokenType type = keywords.contains(word) ? TokenType.KEYWORD : TokenType.IDENTIFIER;
-                tokens.add(new Token(type, word, start, position));
-                continue;
+                break;
+            case 6:
+                switch (input.charAt(start)) {
+                    case 'r': return rest(input, start, TokenKind.KW_RETURN);
+                    case 's': return input.charAt(start + 1) == 'w'
+                            ? rest(input, start, TokenKind.KW_SWITCH)
+                            : rest(input, start, TokenKind.KW_STRING);
+                }
+                break;
+            case 7:
+                if (input.charAt(start) == 'd') return rest(input, start, TokenKind.KW_DEFAULT);
+                break;
+            case 8:
+                switch (input.charAt(start)) {
+                    case 'f': return rest(input, start, TokenKind.KW_FUNCTION);
+                    case 'c': return rest(input, start, TokenKind.KW_CONTINUE);
+                }
+                break;
+        }
+        return TokenKind.NONE;
+    }
+
+    // Compares the characters after the first one, which the caller already checked
+    private static TokenKind rest(CharSequence input, int start, TokenKind candidate) {
+        String text = candidate.text;
+        for (int i = 1; i < text.length(); i++) {
+            if (input.charAt(start + i) != text.charAt(i)) return TokenKind.NONE;
+        }
+        return candidate;
+    }
+
+    static TokenKind operator(char c) {
+        switch (c) {
+            case '=': return TokenKind.OP_ASSIGN;
+            case '+': return TokenKind.OP_PLUS;
+            case '-': return TokenKind.OP_MINUS;
+            case '*': return TokenKind.OP_STAR;
+            case '/': return TokenKind.OP_SLASH;
+            case '<': return TokenKind.OP_LT;
+            case '>': return TokenKind.OP_GT;
+            case '!': return TokenKind.OP_NOT;
+            case '&': return TokenKind.OP_AMP;
+            case '|': return TokenKind.OP_PIPE;
+            default: return null;
+        }
+    }
+
+    // Two-character operator starting with c and next, or null
+    static TokenKind operatorPair(char c, char next) {
+        switch (c) {
+            case '=': return next == '=' ? TokenKind.OP_EQ : null;
+            case '!': return next == '=' ? TokenKind.OP_NE : null;
+            case '<': return next == '=' ? TokenKind.OP_LE : null;
+            case '>': return next == '=' ? TokenKind.OP_GE : null;
+            case '&': return next == '&' ? TokenKind.OP_AND : null;
+            case '|': return next == '|' ? TokenKind.OP_OR : null;
+            case '+': return next == '+' ? TokenKind.OP_INC : null;
+            case '-': return next == '-' ? TokenKind.OP_DEC : null;
+            default: return null;
+        }
+    }
+
+    static TokenKind separator(char c) {
+        switch (c) {
+            case '[': return TokenKind.SEP_LBRACKET;
+            case ']': return TokenKind.SEP_RBRACKET;
+            case '(': return TokenKind.SEP_LPAREN;
+            case ')': return TokenKind.SEP_RPAREN;
+            case ';': return TokenKind.SEP_SEMICOLON;
+            case '{': return TokenKind.SEP_LBRACE;
+            case '}': return TokenKind.SEP_RBRACE;
+            case ':': return TokenKind.SEP_COLON;
+            case ',': return TokenKind.SEP_COMMA;
+            case '.': return TokenKind.SEP_DOT;
+            default: return null;
+        }
+    }
+
+    /**
+     * Lexes the token at position, reading no further than length (which may be short of
+     * input.length()), and returns the position after it.
+     */
+    static int lexToken(CharSequence input, int position, int length, TokenSink sink) {
+        char current = input.charAt(position);
+
+        // Whitespace
+        if (Character.isWhitespace(current)) {
+            int start = position;
+            while (position < length && Character.isWhitespace(input.charAt(position))) {
+                position++;
             }
+            sink.token(TokenType.WHITESPACE, TokenKind.NONE, start, position);
+            return position;
+        }
 
-            // Numbers
-            if (Character.isDigit(current)) {
+        // Comments
+        if (current == '/' && position + 1 < length) {
+            char next = input.charAt(position + 1);
+
+            // Single-line comment
+            if (next == '/') {
                 int start = position;
-                while (position < input.length() && Character.isDigit(input.charAt(position))) {
+                position += 2;
+
+                while (position < length && input.charAt(position) != '\n') {
                     position++;
                 }
-                tokens.add(new Token(TokenType.NUMBER, input.substring(start, position), start, position));
-                continue;
+
+                sink.token(TokenType.COMMENT, TokenKind.NONE, start, position);
+                return position;
             }
 
-            // Strings
-            if (current == '"') {
+            // Multi-line comment
+            if (next == '*') {
                 int start = position;
-                position++; // skip opening quote
-                StringBuilder str = new StringBuilder();
+                position += 2;
 
-                while (position < input.length() && input.charAt(position) != '"') {
-                    str.append(input.charAt(position));
+                while (position + 1 < length && !(input.charAt(position) == '*' && input.charAt(position + 1) == '/')) {
                     position++;
                 }
 
-                if (position < input.length() && input.charAt(position) == '"') {
-                    position++; // skip closing quote
-                    tokens.add(new Token(TokenType.STRING, "\"" + str + "\"", start, position));
+                if (position + 1 < length) {
+                    position += 2;
                 } else {
-                    tokens.add(new Token(TokenType.UNKNOWN, "\"" + str, start, position));
+                    // Unclosed comment
+                    sink.token(TokenType.UNKNOWN, TokenKind.NONE, start, position);
+                    return position;
                 }
-                continue;
+
+                sink.token(TokenType.COMMENT, TokenKind.NONE, start, position);
+                return position;
             }
+        }
 
-            // Operators
-            if ("=+-*/<>!&|".indexOf(current) != -1) {
-                int start = position;
-                String op = String.valueOf(current);
+        // Identifiers / Keywords
+        if (Character.isLetter(current)) {
+            int start = position;
+            while (position < length &&
+                    (Character.isLetterOrDigit(input.charAt(position)) || input.charAt(position) == '_')) {
                 position++;
+            }
+            TokenKind kind = keyword(input, start, position);
+            sink.token(kind != TokenKind.NONE ? TokenType.KEYWORD : TokenType.IDENTIFIER, kind, start, position);
+            return position;
+        }
 
-                if (position < input.length()) {
-                    char next = input.charAt(position);
-                    if ((current == '=' && next == '=') || (current == '!' && next == '=') ||
-                        (current == '<' && next == '=') || (current == '>' && next == '=') ||
-                        (current == '&' && next == '&') || (current == '|' && next == '|') ||
-                        (current == '+' && next == '+') || (current == '-' && next == '-')) {
-                        op += next;
-                        position++;
-                    } 
-                }
-
-                tokens.add(new Token(TokenType.OPERATOR, op, start, position));
-                continue;
+        // Numbers
+        if (Character.isDigit(current)) {
+            int start = position;
+            while (position < length && Character.isDigit(input.charAt(position))) {
+                position++;
             }
+            sink.token(TokenType.NUMBER, TokenKind.NONE, start, position);
+            return position;
+        }
 
-            // Separators
-            if ("[]();{}:,.".indexOf(current) != -1) {
-                tokens.add(new Token(TokenType.SEPARATOR, String.valueOf(current), position, position + 1));
+        // Strings
+        if (current == '"') {
+            int start = position;
+            position++; // skip opening quote
+
+            while (position < length && input.charAt(position) != '"') {
                 position++;
-                continue;
             }
 
-            // Unknown
-            tokens.add(new Token(TokenType.UNKNOWN, String.valueOf(current), position, position + 1));
+            if (position < length && input.charAt(position) == '"') {
+                position++; // skip closing quote
+                sink.token(TokenType.STRING, TokenKind.NONE, start, position);
+            } else {
+                sink.token(TokenType.UNKNOWN, TokenKind.NONE, start, position);
+            }
+            return position;
+        }
+
+        // Operators
+        TokenKind operator = operator(current);
+        if (operator != null) {
+            int start = position;
             position++;
+
+            if (position < length) {
+                TokenKind pair = operatorPair(current, input.charAt(position));
+                if (pair != null) {
+                    operator = pair;
+                    position++;
+                }
+            }
+
+            sink.token(TokenType.OPERATOR, operator, start, position);
+            return position;
         }
 
-        return tokens;
+        // Separators
+        TokenKind separator = separator(current);
+        if (separator != null) {
+            sink.token(TokenType.SEPARATOR, separator, position, position + 1);
+            return position + 1;
+        }
+
+        // Unknown
+        sink.token(TokenType.UNKNOWN, TokenKind.NONE, position, position + 1);
+        return position + 1;
     }
 }
\ No newline at end of file
@@ -0,0 +1,141 @@
+package lexer;
+
+import model.TokenBuffer;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Tokenizes large inputs on a ForkJoinPool with the same result as the sequential Lexer.
+ *
+ * The input is cut into chunks just after a newline and every chunk is lexed speculatively, as if
+ * the lexer were in its normal state at the chunk's start. That guess is wrong only when a token
+ * (a block comment, an unclosed string) runs across the cut. A sequential fix-up then walks the
+ * chunks in order: wherever the true token stream reaches a position where a speculative token
+ * starts, the rest of that chunk is taken as is; otherwise tokens are lexed one by one until it
+ * does. Chunks swallowed by a long comment are skipped without being lexed again.
+ */
+public class ParallelLexer {
+
+    // Inputs shorter than two chunks are lexed sequentially
+    static final int MIN_CHUNK = 256 * 1024;
+
+    private final ForkJoinPool pool;
+
+    public ParallelLexer() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public ParallelLexer(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public TokenBuffer tokenize(CharSequence input) {
+        return tokenize(input, 0, input.length());
+    }
+
+    /**
+     * Tokens from from, lexed from the normal state, until one ends at or after to; the same as
+     * calling Lexer's token loop while the position is below to.
+     */
+    public TokenBuffer tokenize(CharSequence input, int from, int to) {
+        int length = input.length();
+        int chunkSize = Math.max(MIN_CHUNK, (to - from) / (pool.getParallelism() * 4));
+        int[] starts = chunkStarts(input, from, to, chunkSize);
+        int chunks = starts.length - 1;
+
+        if (chunks < 2 || pool.getParallelism() < 2) {
+            TokenBuffer result = new TokenBuffer(input, Math.max(16, (to - from) / 4));
+            for (int position = from; position < to; ) {
+                position = Lexer.lexToken(input, position, length, result::add);
+            }
+            return result;
+        }
+
+        TokenBuffer[] speculative = new TokenBuffer[chunks];
+        int[] trusted = new int[chunks];
+        pool.invoke(new ChunkTask(input, starts, speculative, trusted, 0, chunks));
+
+        int expected = 16;
+        for (int count : trusted) expected += count;
+        TokenBuffer result = new TokenBuffer(input, expected);
+
+        int position = from;
+        int chunk = 0;
+        while (position < to) {
+            while (position >= starts[chunk + 1]) chunk++;
+            TokenBuffer tokens = speculative[chunk];
+            int count = trusted[chunk];
+            int k = tokens.firstEndingAfter(position);
+            if (k < count && tokens.start(k) == position) {
+                result.addAll(tokens, k, count, 0);
+                position = tokens.end(count - 1);
+            } else {
+                position = Lexer.lexToken(input, position, length, result::add);
+            }
+        }
+        return result;
+    }
+
+    // Chunk boundaries in [from, to], each chunk but the first starting right after a newline
+    private static int[] chunkStarts(CharSequence input, int from, int to, int chunkSize) {
+        int[] starts = new int[Math.max(2, (to - from) / chunkSize + 2)];
+        int count = 0;
+        starts[count++] = from;
+        int next = from + chunkSize;
+        while (next < to) {
+            while (next < to && input.charAt(next - 1) != '\n') next++;
+            if (next >= to) break;
+            starts[count++] = next;
+            next += chunkSize;
+        }
+        starts[count++] = to;
+        return Arrays.copyOf(starts, count);
+    }
+
+    /**
+     * Lexes chunks [first, last) speculatively, splitting the range across the pool; trusted gets
+     * the number of leading tokens of each chunk that do not depend on where it was cut off.
+     */
+    private static class ChunkTask extends RecursiveAction {
+        private final CharSequence input;
+        private final int[] starts;
+        private final TokenBuffer[] speculative;
+        private final int[] trusted;
+        private final int first;
+        private final int last;
+
+        ChunkTask(CharSequence input, int[] starts, TokenBuffer[] speculative, int[] trusted, int first, int last) {
+            this.input = input;
+            this.starts = starts;
+            this.speculative = speculative;
+            this.trusted = trusted;
+            this.first = first;
+            this.last = last;
+        }
+
+        @Override
+        protected void compute() {
+            if (last - first > 1) {
+                int middle = (first + last) >>> 1;
+                invokeAll(new ChunkTask(input, starts, speculative, trusted, first, middle),
+                        new ChunkTask(input, starts, speculative, trusted, middle, last));
+                return;
+            }
+            // Lex only up to the chunk's end, so a comment or string left open does not run on
+            // through the whole input. Tokens ending near that limit might have continued past it
+            // and are dropped; the fix-up lexes them on the full input.
+            int start = starts[first];
+            int limit = starts[first + 1];
+            TokenBuffer tokens = new TokenBuffer(input, Math.max(16, (limit - start) / 4));
+            for (int position = start; position < limit; ) {
+                position = Lexer.lexToken(input, position, limit, tokens::add);
+            }
+            int kept = tokens.size();
+            while (kept > 0 && tokens.end(kept - 1) >= limit - 1) kept--;
+            speculative[first] = tokens;
+            trusted[first] = kept;
+        }
+    }
+}
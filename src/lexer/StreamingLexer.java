@@ -0,0 +1,207 @@
+package lexer;
+
+import model.TokenKind;
+import model.TokenType;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+
+/**
+ * Tokenizes input that arrives in chunks, producing the same tokens as Lexer.tokenize over the
+ * concatenated text. Rather than keeping the text of a token that is cut by a chunk boundary,
+ * the lexer remembers which token it is in (comment, string, operator waiting for its second
+ * character, ...) and carries on with the next chunk, so memory stays constant however long the
+ * input or a single token is. Offsets are absolute and counted in chars from the first chunk.
+ */
+public class StreamingLexer {
+
+    /**
+     * Receives the tokens with absolute offsets.
+     */
+    @FunctionalInterface
+    public interface Sink {
+        void token(TokenType type, TokenKind kind, long start, long end);
+    }
+
+    // Longest keyword; longer identifiers are not compared
+    private static final int MAX_KEYWORD_LENGTH = 8;
+    private static final int READ_BUFFER = 64 * 1024;
+
+    private enum State {
+        NORMAL, WHITESPACE, SLASH, LINE_COMMENT, BLOCK_COMMENT, IDENTIFIER, NUMBER, STRING, OPERATOR
+    }
+
+    private final Sink sink;
+    private State state = State.NORMAL;
+    // Absolute offset of the next character and start of the token in progress
+    private long position;
+    private long start;
+    // BLOCK_COMMENT: the previous character was '*'
+    private boolean star;
+    // OPERATOR: its first character
+    private char pending;
+    // IDENTIFIER: its first characters, enough to recognise a keyword
+    private final StringBuilder identifier = new StringBuilder(MAX_KEYWORD_LENGTH);
+    private char last;
+
+    public StreamingLexer(Sink sink) {
+        this.sink = sink;
+    }
+
+    /**
+     * Reads reader to the end and streams its tokens to sink.
+     */
+    public static void tokenize(Reader reader, Sink sink) throws IOException {
+        StreamingLexer lexer = new StreamingLexer(sink);
+        CharBuffer buffer = CharBuffer.allocate(READ_BUFFER);
+        while (reader.read(buffer) >= 0) {
+            buffer.flip();
+            lexer.feed(buffer);
+            buffer.clear();
+        }
+        lexer.finish();
+    }
+
+    /**
+     * Lexes the remaining characters of chunk; tokens that may continue into the next chunk are
+     * held back until it arrives.
+     */
+    public void feed(CharBuffer chunk) {
+        while (chunk.hasRemaining()) {
+            next(chunk.get());
+        }
+    }
+
+    /**
+     * Marks the end of input and emits the token still in progress.
+     */
+    public void finish() {
+        switch (state) {
+            case WHITESPACE -> emit(TokenType.WHITESPACE, TokenKind.NONE, position);
+            case SLASH -> emit(TokenType.OPERATOR, TokenKind.OP_SLASH, start + 1);
+            case LINE_COMMENT -> emit(TokenType.COMMENT, TokenKind.NONE, position);
+            case BLOCK_COMMENT -> {
+                // Like Lexer: an unclosed comment stops one short of the end (but keeps its "/*"),
+                // and the last character is lexed on its own
+                long end = Math.max(start + 2, position - 1);
+                emit(TokenType.UNKNOWN, TokenKind.NONE, end);
+                if (end < position) {
+                    position = end;
+                    next(last);
+                    finish();
+                }
+            }
+            case IDENTIFIER -> emitIdentifier();
+            case NUMBER -> emit(TokenType.NUMBER, TokenKind.NONE, position);
+            case STRING -> emit(TokenType.UNKNOWN, TokenKind.NONE, position);
+            case OPERATOR -> emit(TokenType.OPERATOR, Lexer.operator(pending), start + 1);
+            case NORMAL -> { }
+        }
+    }
+
+    private void next(char c) {
+        switch (state) {
+            case NORMAL -> begin(c);
+            case WHITESPACE -> {
+                if (!Character.isWhitespace(c)) {
+                    emit(TokenType.WHITESPACE, TokenKind.NONE, position);
+                    begin(c);
+                }
+            }
+            case SLASH -> {
+                if (c == '/') {
+                    state = State.LINE_COMMENT;
+                } else if (c == '*') {
+                    state = State.BLOCK_COMMENT;
+                    star = false;
+                } else {
+                    emit(TokenType.OPERATOR, TokenKind.OP_SLASH, start + 1);
+                    begin(c);
+                }
+            }
+            case LINE_COMMENT -> {
+                if (c == '\n') {
+                    emit(TokenType.COMMENT, TokenKind.NONE, position);
+                    begin(c);
+                }
+            }
+            case BLOCK_COMMENT -> {
+                if (star && c == '/') {
+                    emit(TokenType.COMMENT, TokenKind.NONE, position + 1);
+                } else {
+                    star = c == '*';
+                }
+            }
+            case IDENTIFIER -> {
+                if (Character.isLetterOrDigit(c) || c == '_') {
+                    if (identifier.length() <= MAX_KEYWORD_LENGTH) identifier.append(c);
+                } else {
+                    emitIdentifier();
+                    begin(c);
+                }
+            }
+            case NUMBER -> {
+                if (!Character.isDigit(c)) {
+                    emit(TokenType.NUMBER, TokenKind.NONE, position);
+                    begin(c);
+                }
+            }
+            case STRING -> {
+                if (c == '"') emit(TokenType.STRING, TokenKind.NONE, position + 1);
+            }
+            case OPERATOR -> {
+                TokenKind pair = Lexer.operatorPair(pending, c);
+                if (pair != null) {
+                    emit(TokenType.OPERATOR, pair, position + 1);
+                } else {
+                    emit(TokenType.OPERATOR, Lexer.operator(pending), start + 1);
+                    begin(c);
+                }
+            }
+        }
+        last = c;
+        position++;
+    }
+
+    // Starts a token at the current position
+    private void begin(char c) {
+        start = position;
+        if (Character.isWhitespace(c)) {
+            state = State.WHITESPACE;
+        } else if (c == '/') {
+            state = State.SLASH;
+        } else if (Character.isLetter(c)) {
+            state = State.IDENTIFIER;
+            identifier.setLength(0);
+            identifier.append(c);
+        } else if (Character.isDigit(c)) {
+            state = State.NUMBER;
+        } else if (c == '"') {
+            state = State.STRING;
+        } else if (Lexer.operator(c) != null) {
+            state = State.OPERATOR;
+            pending = c;
+        } else {
+            TokenKind separator = Lexer.separator(c);
+            if (separator != null) {
+                sink.token(TokenType.SEPARATOR, separator, position, position + 1);
+            } else {
+                sink.token(TokenType.UNKNOWN, TokenKind.NONE, position, position + 1);
+            }
+            state = State.NORMAL;
+        }
+    }
+
+    private void emitIdentifier() {
+        TokenKind kind = identifier.length() <= MAX_KEYWORD_LENGTH
+                ? Lexer.keyword(identifier, 0, identifier.length())
+                : TokenKind.NONE;
+        emit(kind != TokenKind.NONE ? TokenType.KEYWORD : TokenType.IDENTIFIER, kind, position);
+    }
+
+    private void emit(TokenType type, TokenKind kind, long end) {
+        sink.token(type, kind, start, end);
+        state = State.NORMAL;
+    }
+}
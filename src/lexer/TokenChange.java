@@ -0,0 +1,27 @@
+package lexer;
+
+import model.TokenBuffer;
+
+/**
+ * Result of an incremental relex: the new token stream and the span of it that was replaced.
+ * Tokens [fromIndex, oldToIndex) of the old stream became [fromIndex, newToIndex) of the new one;
+ * tokens after the span are unchanged apart from being shifted by the edit's length delta.
+ */
+public class TokenChange {
+    public final TokenBuffer tokens;
+    public final int fromIndex;
+    public final int oldToIndex;
+    public final int newToIndex;
+
+    public TokenChange(TokenBuffer tokens, int fromIndex, int oldToIndex, int newToIndex) {
+        this.tokens = tokens;
+        this.fromIndex = fromIndex;
+        this.oldToIndex = oldToIndex;
+        this.newToIndex = newToIndex;
+    }
+
+    @Override
+    public String toString() {
+        return "[" + fromIndex + "-" + oldToIndex + " -> " + fromIndex + "-" + newToIndex + "]";
+    }
+}
@@ -0,0 +1,12 @@
+package lexer;
+
+import model.TokenKind;
+import model.TokenType;
+
+/**
+ * Receives tokens from the Lexer as they are recognised, as offsets into the lexed text.
+ */
+@FunctionalInterface
+public interface TokenSink {
+    void token(TokenType type, TokenKind kind, int start, int end);
+}
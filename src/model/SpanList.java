@@ -0,0 +1,292 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Spans [start, end) with a 16-bit tag, stored in segments of up to SEGMENT spans that lists
+ * share. addAll() refers to the other list's segments instead of copying them and moves their
+ * offsets with a shift applied on read, so a list that differs from another by a few spans costs
+ * those spans plus one piece per segment, not a copy of the whole list.
+ *
+ * A list is built by one thread and not modified once another list has taken spans from it.
+ */
+public final class SpanList {
+    private static final int SEGMENT = 4096;
+    // Ranges shorter than this are copied instead of shared, so that pieces stay long
+    private static final int MIN_SHARED = SEGMENT / 4;
+
+    private static final class Segment {
+        final int[] starts;
+        final int[] ends;
+        final short[] tags;
+
+        Segment(int capacity) {
+            starts = new int[capacity];
+            ends = new int[capacity];
+            tags = new short[capacity];
+        }
+
+        Segment(Segment from, int capacity) {
+            starts = Arrays.copyOf(from.starts, capacity);
+            ends = Arrays.copyOf(from.ends, capacity);
+            tags = Arrays.copyOf(from.tags, capacity);
+        }
+    }
+
+    // Spans [first, first + count) of the list, piece number piece, at base + index in the arrays with shift added
+    private static final class Cursor {
+        static final Cursor NONE = new Cursor(-1, 0, 0, 0, 0, null, null, null);
+
+        final int piece;
+        final int first;
+        final int count;
+        final int base;
+        final int shift;
+        final int[] starts;
+        final int[] ends;
+        final short[] tags;
+
+        Cursor(int piece, int first, int count, int base, int shift, int[] starts, int[] ends, short[] tags) {
+            this.piece = piece;
+            this.first = first;
+            this.count = count;
+            this.base = base;
+            this.shift = shift;
+            this.starts = starts;
+            this.ends = ends;
+            this.tags = tags;
+        }
+    }
+
+    // Piece p is spans [firsts[p], firsts[p + 1]) of the list, held in segments[p] from offsets[p]
+    // on, with shifts[p] added to their offsets
+    private Segment[] segments = new Segment[4];
+    private int[] offsets = new int[4];
+    private int[] shifts = new int[4];
+    private int[] firsts = new int[5];
+    private int pieces;
+    // Whether the last segment was created by this list, which then appends to it
+    private boolean ownsLast;
+    // Spans expected in total, for sizing new segments
+    private final int expected;
+    // Piece of the last access. Readers on different threads may replace each other's, which
+    // only costs a search, as a Cursor never changes
+    private Cursor cursor = Cursor.NONE;
+
+    public SpanList() {
+        this(16);
+    }
+
+    public SpanList(int expected) {
+        this.expected = expected;
+    }
+
+    public int size() {
+        return firsts[pieces];
+    }
+
+    public int start(int index) {
+        Cursor c = cursor;
+        if (Integer.compareUnsigned(index - c.first, c.count) >= 0) c = seek(index);
+        return c.starts[c.base + index] + c.shift;
+    }
+
+    public int end(int index) {
+        Cursor c = cursor;
+        if (Integer.compareUnsigned(index - c.first, c.count) >= 0) c = seek(index);
+        return c.ends[c.base + index] + c.shift;
+    }
+
+    public int tag(int index) {
+        Cursor c = cursor;
+        if (Integer.compareUnsigned(index - c.first, c.count) >= 0) c = seek(index);
+        return c.tags[c.base + index] & 0xFFFF;
+    }
+
+    public void add(int start, int end, int tag) {
+        int count = pieces > 0 ? firsts[pieces] - firsts[pieces - 1] : 0;
+        if (!ownsLast || count == SEGMENT) {
+            appendPiece(new Segment(Math.max(16, Math.min(SEGMENT, expected - size()))), 0, 0, 0);
+            ownsLast = true;
+            count = 0;
+        }
+        Segment segment = segments[pieces - 1];
+        if (count == segment.starts.length) {
+            segment = new Segment(segment, Math.min(SEGMENT, count * 2));
+            segments[pieces - 1] = segment;
+            cursor = Cursor.NONE;
+        }
+        segment.starts[count] = start;
+        segment.ends[count] = end;
+        segment.tags[count] = (short) tag;
+        firsts[pieces]++;
+    }
+
+    /**
+     * Extends the last span to end if it ends at start with the same tag and is not shared with
+     * another list; returns whether it did.
+     */
+    public boolean extendLast(int start, int end, int tag) {
+        if (!ownsLast || size() == 0) return false;
+        Segment segment = segments[pieces - 1];
+        int last = firsts[pieces] - firsts[pieces - 1] - 1;
+        if (segment.ends[last] != start || (segment.tags[last] & 0xFFFF) != tag) return false;
+        segment.ends[last] = end;
+        return true;
+    }
+
+    /**
+     * Appends spans [from, to) of other with their offsets moved by delta. Long runs share other's
+     * segments; short ones, and what it takes to make a short last piece long, are copied.
+     */
+    public void addAll(SpanList other, int from, int to, int delta) {
+        if (from >= to) return;
+        int p = other.piece(from);
+        reserve(pieces + other.piece(to - 1) - p + 2);
+        while (from < to) {
+            int end = Math.min(to, other.firsts[p + 1]);
+            Segment segment = other.segments[p];
+            int at = other.offsets[p] + from - other.firsts[p];
+            int shift = other.shifts[p] + delta;
+            int count = end - from;
+
+            int copied = 0;
+            if (count < MIN_SHARED) {
+                copied = count;
+            } else if (ownsLast && firsts[pieces] - firsts[pieces - 1] < MIN_SHARED) {
+                copied = MIN_SHARED - (firsts[pieces] - firsts[pieces - 1]);
+            }
+            copy(segment, at, copied, shift);
+            if (count - copied >= MIN_SHARED) {
+                appendPiece(segment, at + copied, count - copied, shift);
+                ownsLast = false;
+            } else {
+                copy(segment, at + copied, count - copied, shift);
+            }
+            from = end;
+            p++;
+        }
+    }
+
+    /**
+     * Index of the first span ending after offset, or size() if there is none.
+     */
+    public int firstEndingAfter(int offset) {
+        int low = 0;
+        int high = pieces;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (lastOf(segments[mid].ends, mid) <= offset) low = mid + 1;
+            else high = mid;
+        }
+        if (low == pieces) return size();
+        int[] ends = segments[low].ends;
+        int base = offsets[low];
+        int target = offset - shifts[low];
+        int first = base;
+        int last = base + firsts[low + 1] - firsts[low];
+        while (first < last) {
+            int mid = (first + last) >>> 1;
+            if (ends[mid] <= target) first = mid + 1;
+            else last = mid;
+        }
+        return firsts[low] + first - base;
+    }
+
+    /**
+     * Index of the first span starting at or after offset, or size() if there is none.
+     */
+    public int firstStartingAtOrAfter(int offset) {
+        int low = 0;
+        int high = pieces;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (lastOf(segments[mid].starts, mid) < offset) low = mid + 1;
+            else high = mid;
+        }
+        if (low == pieces) return size();
+        int[] starts = segments[low].starts;
+        int base = offsets[low];
+        int target = offset - shifts[low];
+        int first = base;
+        int last = base + firsts[low + 1] - firsts[low];
+        while (first < last) {
+            int mid = (first + last) >>> 1;
+            if (starts[mid] < target) first = mid + 1;
+            else last = mid;
+        }
+        return firsts[low] + first - base;
+    }
+
+    /**
+     * Bytes of the segments this list refers to and of its own piece arrays; segments shared
+     * with other lists are counted in each.
+     */
+    public long memoryBytes() {
+        long bytes = (long) segments.length * (3 * Integer.BYTES + 8);
+        Segment previous = null;
+        for (int p = 0; p < pieces; p++) {
+            if (segments[p] != previous) {
+                bytes += (long) segments[p].starts.length * (2 * Integer.BYTES + Short.BYTES);
+                previous = segments[p];
+            }
+        }
+        return bytes;
+    }
+
+    // Cursor over the piece holding index
+    private Cursor seek(int index) {
+        if (index < 0 || index >= firsts[pieces]) throw new IndexOutOfBoundsException(index);
+        int p = piece(index);
+        Segment segment = segments[p];
+        Cursor c = new Cursor(p, firsts[p], firsts[p + 1] - firsts[p], offsets[p] - firsts[p], shifts[p],
+                segment.starts, segment.ends, segment.tags);
+        cursor = c;
+        return c;
+    }
+
+    // Piece holding index: the one after the last accessed when walking in order, else a search
+    private int piece(int index) {
+        int next = cursor.piece + 1;
+        if (next < pieces && index >= firsts[next] && index < firsts[next + 1]) return next;
+        int low = 0;
+        int high = pieces - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (firsts[mid] <= index) low = mid;
+            else high = mid - 1;
+        }
+        return low;
+    }
+
+    // Shifted value of the last span of piece p in values, its segment's starts or ends
+    private int lastOf(int[] values, int p) {
+        return values[offsets[p] + firsts[p + 1] - firsts[p] - 1] + shifts[p];
+    }
+
+    private void copy(Segment segment, int at, int count, int shift) {
+        for (int i = at; i < at + count; i++) {
+            add(segment.starts[i] + shift, segment.ends[i] + shift, segment.tags[i] & 0xFFFF);
+        }
+    }
+
+    // Makes room for count pieces
+    private void reserve(int count) {
+        if (count + 1 > firsts.length) {
+            int length = Math.max(count, firsts.length * 2);
+            segments = Arrays.copyOf(segments, length);
+            offsets = Arrays.copyOf(offsets, length);
+            shifts = Arrays.copyOf(shifts, length);
+            firsts = Arrays.copyOf(firsts, length + 1);
+        }
+    }
+
+    private void appendPiece(Segment segment, int offset, int count, int shift) {
+        reserve(pieces + 1);
+        segments[pieces] = segment;
+        offsets[pieces] = offset;
+        shifts[pieces] = shift;
+        firsts[pieces + 1] = firsts[pieces] + count;
+        pieces++;
+    }
+}
@@ -2,12 +2,18 @@ package model;
 
 public class Token {
     public TokenType type;
+    public TokenKind kind;
     public String value;
     public int start;
     public int end;
 
     public Token(TokenType type, String value, int start, int end) {
+        this(type, TokenKind.of(type, value), value, start, end);
+    }
+
+    public Token(TokenType type, TokenKind kind, String value, int start, int end) {
         this.type = type;
+        this.kind = kind;
         this.value = value;
         this.start = start;
         this.end = end;
@@ -0,0 +1,224 @@
+package model;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.zip.CRC32C;
+
+/**
+ * Token stream stored as primitive spans instead of one Token object per token: the offsets and
+ * a tag packing the type and kind. Token text is not copied; text() is a view into the source the
+ * tokens were lexed from.
+ *
+ * The spans are a SpanList, so a stream built from another with addAll() shares the other's
+ * storage for the tokens it takes over, even when they are shifted.
+ */
+public class TokenBuffer {
+    private static final TokenType[] TYPES = TokenType.values();
+    private static final TokenKind[] KINDS = TokenKind.values();
+
+    /**
+     * Fingerprint of what the tags writeTo() writes stand for: the names of the token types and
+     * the names, types and texts of the kinds, in order. Stored tokens are only valid for a build
+     * with the same fingerprint.
+     */
+    public static final int TAGS = tagsFingerprint();
+
+    private final CharSequence source;
+    private final SpanList spans;
+
+    public TokenBuffer(CharSequence source) {
+        this(source, 16);
+    }
+
+    public TokenBuffer(CharSequence source, int capacity) {
+        this.source = source;
+        this.spans = new SpanList(capacity);
+    }
+
+    /**
+     * Builds a buffer from Token objects. Their values are laid out at their offsets in a
+     * rebuilt source so that positions stay as they were.
+     */
+    public static TokenBuffer of(List<Token> tokens) {
+        int length = 0;
+        for (Token token : tokens) {
+            length = Math.max(length, token.end);
+        }
+        char[] text = new char[length];
+        Arrays.fill(text, ' ');
+        for (Token token : tokens) {
+            int count = Math.min(token.value.length(), length - token.start);
+            token.value.getChars(0, count, text, token.start);
+        }
+
+        TokenBuffer buffer = new TokenBuffer(new String(text), tokens.size());
+        for (Token token : tokens) {
+            buffer.add(token.type, token.kind, token.start, token.end);
+        }
+        return buffer;
+    }
+
+    public void add(TokenType type, TokenKind kind, int start, int end) {
+        spans.add(start, end, type.ordinal() | kind.ordinal() << 8);
+    }
+
+    /**
+     * Appends tokens [from, to) of another buffer with their offsets moved by delta. Long runs of
+     * them are shared with the other buffer rather than copied.
+     */
+    public void addAll(TokenBuffer other, int from, int to, int delta) {
+        spans.addAll(other.spans, from, to, delta);
+    }
+
+    /**
+     * Writes the tokens in bulk, in out's byte order: all starts and all ends as ints, then all
+     * types and all kinds as bytes. Takes 10 bytes per token.
+     */
+    public void writeTo(ByteBuffer out) {
+        int size = size();
+        IntBuffer ints = out.asIntBuffer();
+        for (int i = 0; i < size; i++) {
+            ints.put(spans.start(i));
+        }
+        for (int i = 0; i < size; i++) {
+            ints.put(spans.end(i));
+        }
+        out.position(out.position() + 8 * size);
+        for (int i = 0; i < size; i++) {
+            out.put((byte) spans.tag(i));
+        }
+        for (int i = 0; i < size; i++) {
+            out.put((byte) (spans.tag(i) >>> 8));
+        }
+    }
+
+    /**
+     * Reads count tokens written by writeTo() for the given source, or returns null if they are
+     * not a valid token stream of it: the lexer's tokens follow each other without gaps or empty
+     * ones and cover the whole source, and are of known types and kinds.
+     */
+    public static TokenBuffer readFrom(CharSequence source, ByteBuffer in, int count) {
+        TokenBuffer buffer = new TokenBuffer(source, count);
+        IntBuffer ints = in.asIntBuffer();
+        int types = in.position() + 8 * count;
+        int kinds = types + count;
+
+        int previousEnd = 0;
+        for (int i = 0; i < count; i++) {
+            int start = ints.get(i);
+            int end = ints.get(count + i);
+            byte type = in.get(types + i);
+            byte kind = in.get(kinds + i);
+            if (start != previousEnd || end <= start
+                    || type < 0 || type >= TYPES.length || kind < 0 || kind >= KINDS.length) {
+                return null;
+            }
+            buffer.spans.add(start, end, type | kind << 8);
+            previousEnd = end;
+        }
+        in.position(kinds + count);
+        return previousEnd == source.length() ? buffer : null;
+    }
+
+    private static int tagsFingerprint() {
+        StringBuilder names = new StringBuilder();
+        for (TokenType type : TYPES) {
+            names.append(type.name()).append('\n');
+        }
+        for (TokenKind kind : KINDS) {
+            names.append(kind.name()).append(' ').append(kind.type).append(' ').append(kind.text).append('\n');
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(names.toString().getBytes(StandardCharsets.UTF_8));
+        return (int) crc.getValue();
+    }
+
+    public int size() {
+        return spans.size();
+    }
+
+    // Bytes held by the spans, including storage shared with other buffers
+    public long memoryBytes() {
+        return spans.memoryBytes();
+    }
+
+    public CharSequence source() {
+        return source;
+    }
+
+    public TokenType type(int index) {
+        return TYPES[spans.tag(index) & 0xFF];
+    }
+
+    public TokenKind kind(int index) {
+        return KINDS[spans.tag(index) >>> 8];
+    }
+
+    public int start(int index) {
+        return spans.start(index);
+    }
+
+    public int end(int index) {
+        return spans.end(index);
+    }
+
+    public CharSequence text(int index) {
+        return CharBuffer.wrap(source, spans.start(index), spans.end(index));
+    }
+
+    public boolean textEquals(int index, String value) {
+        int start = spans.start(index);
+        int length = spans.end(index) - start;
+        if (length != value.length()) return false;
+        for (int i = 0; i < length; i++) {
+            if (source.charAt(start + i) != value.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Index of the first token ending after offset, or size() if there is none.
+     */
+    public int firstEndingAfter(int offset) {
+        return spans.firstEndingAfter(offset);
+    }
+
+    public Token get(int index) {
+        if (index < 0 || index >= size()) throw new IndexOutOfBoundsException(index);
+        return new Token(type(index), kind(index), text(index).toString(), start(index), end(index));
+    }
+
+    /**
+     * Read-only List view; Token objects are created on access.
+     */
+    public List<Token> asList() {
+        return new TokenList();
+    }
+
+    public List<Token> toList() {
+        List<Token> tokens = new ArrayList<>(size());
+        for (int i = 0; i < size(); i++) {
+            tokens.add(get(i));
+        }
+        return tokens;
+    }
+
+    private class TokenList extends AbstractList<Token> implements RandomAccess {
+        @Override
+        public Token get(int index) {
+            return TokenBuffer.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return TokenBuffer.this.size();
+        }
+    }
+}
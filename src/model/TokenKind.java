@@ -0,0 +1,90 @@
+package model;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Exact identity of a fixed-text token (keyword, operator or separator), so that callers can
+ * compare or switch on kinds instead of strings. Tokens without a fixed text (identifiers,
+ * numbers, ...) have kind NONE.
+ */
+public enum TokenKind {
+    NONE(null, null),
+
+    KW_IF(TokenType.KEYWORD, "if"),
+    KW_ELSE(TokenType.KEYWORD, "else"),
+    KW_WHILE(TokenType.KEYWORD, "while"),
+    KW_FUNCTION(TokenType.KEYWORD, "function"),
+    KW_RETURN(TokenType.KEYWORD, "return"),
+    KW_BREAK(TokenType.KEYWORD, "break"),
+    KW_CONTINUE(TokenType.KEYWORD, "continue"),
+    KW_PRINT(TokenType.KEYWORD, "print"),
+    KW_FOR(TokenType.KEYWORD, "for"),
+    KW_DO(TokenType.KEYWORD, "do"),
+    KW_SWITCH(TokenType.KEYWORD, "switch"),
+    KW_CASE(TokenType.KEYWORD, "case"),
+    KW_DEFAULT(TokenType.KEYWORD, "default"),
+    KW_TRUE(TokenType.KEYWORD, "true"),
+    KW_FALSE(TokenType.KEYWORD, "false"),
+    KW_NULL(TokenType.KEYWORD, "null"),
+    KW_INT(TokenType.KEYWORD, "int"),
+    KW_BOOL(TokenType.KEYWORD, "bool"),
+    KW_STRING(TokenType.KEYWORD, "string"),
+    KW_VOID(TokenType.KEYWORD, "void"),
+
+    OP_ASSIGN(TokenType.OPERATOR, "="),
+    OP_PLUS(TokenType.OPERATOR, "+"),
+    OP_MINUS(TokenType.OPERATOR, "-"),
+    OP_STAR(TokenType.OPERATOR, "*"),
+    OP_SLASH(TokenType.OPERATOR, "/"),
+    OP_LT(TokenType.OPERATOR, "<"),
+    OP_GT(TokenType.OPERATOR, ">"),
+    OP_NOT(TokenType.OPERATOR, "!"),
+    OP_AMP(TokenType.OPERATOR, "&"),
+    OP_PIPE(TokenType.OPERATOR, "|"),
+    OP_EQ(TokenType.OPERATOR, "=="),
+    OP_NE(TokenType.OPERATOR, "!="),
+    OP_LE(TokenType.OPERATOR, "<="),
+    OP_GE(TokenType.OPERATOR, ">="),
+    OP_AND(TokenType.OPERATOR, "&&"),
+    OP_OR(TokenType.OPERATOR, "||"),
+    OP_INC(TokenType.OPERATOR, "++"),
+    OP_DEC(TokenType.OPERATOR, "--"),
+
+    SEP_LBRACKET(TokenType.SEPARATOR, "["),
+    SEP_RBRACKET(TokenType.SEPARATOR, "]"),
+    SEP_LPAREN(TokenType.SEPARATOR, "("),
+    SEP_RPAREN(TokenType.SEPARATOR, ")"),
+    SEP_SEMICOLON(TokenType.SEPARATOR, ";"),
+    SEP_LBRACE(TokenType.SEPARATOR, "{"),
+    SEP_RBRACE(TokenType.SEPARATOR, "}"),
+    SEP_COLON(TokenType.SEPARATOR, ":"),
+    SEP_COMMA(TokenType.SEPARATOR, ","),
+    SEP_DOT(TokenType.SEPARATOR, ".");
+
+    private static final Map<String, TokenKind> BY_TEXT = new HashMap<>();
+
+    static {
+        for (TokenKind kind : values()) {
+            if (kind.text != null) BY_TEXT.put(kind.type + " " + kind.text, kind);
+        }
+    }
+
+    public final TokenType type;
+    public final String text;
+
+    TokenKind(TokenType type, String text) {
+        this.type = type;
+        this.text = text;
+    }
+
+    /**
+     * Kind of a token given as type and text; meant for tokens built by hand, the Lexer
+     * assigns kinds while scanning.
+     */
+    public static TokenKind of(TokenType type, String text) {
+        if (text == null) return NONE;
+        TokenKind kind = BY_TEXT.get(type + " " + text);
+        return kind != null ? kind : NONE;
+    }
+}
@@ -0,0 +1,144 @@
+package parser;
+
+import model.TokenBuffer;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Syntax tree stored in parallel primitive arrays rather than as node objects: a node is an index,
+ * and its kind, main token (see NodeKind), token range and subtree size are array elements, about
+ * 17 bytes a node with no header or pointer per node. Nodes are in post-order, children before
+ * their parent and the root last, so building one appends and a node's subtree is the index range
+ * [node - subtreeSize(node) + 1, node]. Walking the whole tree is a loop over the arrays.
+ *
+ * Token indices refer to tokens(); token ranges are [start, end), end being exclusive.
+ */
+public class Ast {
+    private final TokenBuffer tokens;
+    private byte[] kinds;
+    private int[] tokenIndices;
+    private int[] starts;
+    private int[] ends;
+    private int[] sizes;
+    private int size;
+    private List<Diagnostic> diagnostics = List.of();
+
+    private static final NodeKind[] KINDS = NodeKind.values();
+
+    Ast(TokenBuffer tokens) {
+        this.tokens = tokens;
+        // About a node for every four tokens, counting whitespace
+        int capacity = Math.max(16, tokens.size() / 4);
+        kinds = new byte[capacity];
+        tokenIndices = new int[capacity];
+        starts = new int[capacity];
+        ends = new int[capacity];
+        sizes = new int[capacity];
+    }
+
+    /**
+     * Appends a node whose children are the nodes appended since size() was mark.
+     */
+    int add(NodeKind kind, int mark, int token, int start, int end) {
+        if (size == kinds.length) {
+            int capacity = size + (size >> 1);
+            kinds = Arrays.copyOf(kinds, capacity);
+            tokenIndices = Arrays.copyOf(tokenIndices, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            sizes = Arrays.copyOf(sizes, capacity);
+        }
+        kinds[size] = (byte) kind.ordinal();
+        tokenIndices[size] = token;
+        starts[size] = start;
+        ends[size] = end;
+        sizes[size] = size - mark + 1;
+        return size++;
+    }
+
+    // Drops the spare capacity once the tree is complete
+    void trim() {
+        kinds = Arrays.copyOf(kinds, size);
+        tokenIndices = Arrays.copyOf(tokenIndices, size);
+        starts = Arrays.copyOf(starts, size);
+        ends = Arrays.copyOf(ends, size);
+        sizes = Arrays.copyOf(sizes, size);
+    }
+
+    void setDiagnostics(List<Diagnostic> diagnostics) {
+        this.diagnostics = diagnostics;
+    }
+
+    public TokenBuffer tokens() {
+        return tokens;
+    }
+
+    public List<Diagnostic> diagnostics() {
+        return diagnostics;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int root() {
+        return size - 1;
+    }
+
+    public NodeKind kind(int node) {
+        return KINDS[kinds[node]];
+    }
+
+    // Main token of node, or -1 if it has none or it was missing
+    public int token(int node) {
+        return tokenIndices[node];
+    }
+
+    public int start(int node) {
+        return starts[node];
+    }
+
+    public int end(int node) {
+        return ends[node];
+    }
+
+    // Number of nodes in the subtree of node, node included
+    public int subtreeSize(int node) {
+        return sizes[node];
+    }
+
+    // Last child of node, or -1 if it has none
+    public int lastChild(int node) {
+        return sizes[node] > 1 ? node - 1 : -1;
+    }
+
+    // Child of parent before child, or -1 if child is the first
+    public int previousSibling(int parent, int child) {
+        int previous = child - sizes[child];
+        return previous > parent - sizes[parent] ? previous : -1;
+    }
+
+    public int childCount(int node) {
+        int count = 0;
+        for (int child = lastChild(node); child != -1; child = previousSibling(node, child)) {
+            count++;
+        }
+        return count;
+    }
+
+    // Children of node, first to last
+    public int[] children(int node) {
+        int[] children = new int[childCount(node)];
+        int i = children.length;
+        for (int child = lastChild(node); child != -1; child = previousSibling(node, child)) {
+            children[--i] = child;
+        }
+        return children;
+    }
+
+    // Bytes held by the arrays
+    public long memoryBytes() {
+        return (long) kinds.length * (1 + 4 * Integer.BYTES);
+    }
+}
@@ -0,0 +1,339 @@
+package parser;
+
+import java.util.Arrays;
+
+import parser.SyntaxTree.Node;
+
+/**
+ * The statements nested in a SyntaxTree node, in order, each with its offset from the node's
+ * first token and whether it follows the one before it in the same statement list.
+ *
+ * They are kept in immutable chunks of up to CHUNK statements that lists share. A list refers to
+ * each of its chunks with an offset to add to the chunk's, so a reparse takes over a run of
+ * unchanged statements by referring to the old list's chunks and only copies the statements of
+ * the chunks the run starts or ends inside: a statement list of any length costs a reparse one
+ * entry per chunk, not a copy of the list. Each chunk also sums up its statements (errors, names,
+ * how far they looked ahead, whether they can be reused), so the builder and the lookups pass
+ * over a chunk at a time.
+ */
+final class Children {
+    static final int CHUNK = 64;
+    static final Children NONE = new Children(new Chunk[0], new int[0], new boolean[0], new int[1], 0);
+
+    private static final int[] NO_INTS = new int[0];
+    private static final Node[] NO_NODES = new Node[0];
+    private static final boolean[] NO_FLAGS = new boolean[0];
+    // Directory arrays of lists of a single unshifted chunk, which most lists are
+    private static final int[] NO_SHIFT = new int[1];
+    private static final boolean[] LEAD = {true};
+    private static final boolean[] NO_LEAD = new boolean[1];
+    private static final int[][] FIRSTS = new int[CHUNK + 1][];
+
+    static {
+        for (int n = 1; n <= CHUNK; n++) FIRSTS[n] = new int[] {0, n};
+    }
+
+    static final class Chunk {
+        final int[] starts;
+        final Node[] nodes;
+        final boolean[] follows;
+        final int errors;
+        final long names;
+        final long declared;
+        final long bytes;
+        // Every statement complete and free of errors
+        final boolean clean;
+        // Every statement after the first follows the one before
+        final boolean chained;
+        // Furthest start + lookahead of a statement
+        final int reach;
+
+        Chunk(int[] starts, Node[] nodes, boolean[] follows) {
+            this.starts = starts;
+            this.nodes = nodes;
+            this.follows = follows;
+            int errors = 0;
+            long names = 0;
+            long declared = 0;
+            long bytes = 64 + 3 * 16 + 9L * nodes.length;
+            boolean clean = true;
+            boolean chained = true;
+            int reach = Integer.MIN_VALUE;
+            for (int i = 0; i < nodes.length; i++) {
+                Node node = nodes[i];
+                errors += node.errors;
+                names |= node.names;
+                declared |= node.declared;
+                bytes += node.bytes;
+                clean &= node.complete && node.errors == 0;
+                chained &= i == 0 || follows[i];
+                reach = Math.max(reach, starts[i] + node.lookahead);
+            }
+            this.errors = errors;
+            this.names = names;
+            this.declared = declared;
+            this.bytes = bytes;
+            this.clean = clean;
+            this.chained = chained;
+            this.reach = reach;
+        }
+
+        int size() {
+            return nodes.length;
+        }
+
+        // Offset just past the last statement
+        int end() {
+            return starts[nodes.length - 1] + nodes[nodes.length - 1].length;
+        }
+    }
+
+    private final Chunk[] chunks;
+    // Added to the starts of each chunk
+    private final int[] shifts;
+    // Whether the first statement of each chunk follows the one before, which in this list may
+    // differ from what the chunk says
+    private final boolean[] leads;
+    // Index of the first statement of each chunk, then the number of statements
+    private final int[] firsts;
+    private final int count;
+    // Chunk of the last access; only a hint, so racing threads are harmless
+    private int hint;
+
+    private Children(Chunk[] chunks, int[] shifts, boolean[] leads, int[] firsts, int count) {
+        this.chunks = chunks;
+        this.shifts = shifts;
+        this.leads = leads;
+        this.firsts = firsts;
+        this.count = count;
+    }
+
+    int size() {
+        return firsts[count];
+    }
+
+    /**
+     * Memory of the list itself, without its chunks; directory arrays shared between lists are
+     * not counted.
+     */
+    long bytes() {
+        if (count == 0) return 0;
+        return 40 + 16 + 4L * count + (shifts == NO_SHIFT ? 0 : 3 * 16 + 9L * count);
+    }
+
+    int chunkCount() {
+        return count;
+    }
+
+    Chunk chunk(int p) {
+        return chunks[p];
+    }
+
+    int shift(int p) {
+        return shifts[p];
+    }
+
+    int first(int p) {
+        return firsts[p];
+    }
+
+    Node node(int index) {
+        int p = chunkOf(index);
+        return chunks[p].nodes[index - firsts[p]];
+    }
+
+    int start(int index) {
+        int p = chunkOf(index);
+        return chunks[p].starts[index - firsts[p]] + shifts[p];
+    }
+
+    boolean follows(int index) {
+        int p = chunkOf(index);
+        return index == firsts[p] ? leads[p] : chunks[p].follows[index - firsts[p]];
+    }
+
+    /**
+     * Index of the first statement from index from on that starts at or after start, or size().
+     */
+    int indexAtOrAfter(int start, int from) {
+        // Lookups mostly walk the list in order
+        if (from == size() || start(from) >= start) return from;
+        if (from + 1 == size() || start(from + 1) >= start) return from + 1;
+        int low = from + 2;
+        int high = size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (start(mid) < start) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * Index of the first statement with errors, or size().
+     */
+    int firstWithErrors() {
+        for (int p = 0; p < count; p++) {
+            if (chunks[p].errors == 0) continue;
+            Node[] nodes = chunks[p].nodes;
+            for (int i = 0; ; i++) {
+                if (nodes[i].errors > 0) return firsts[p] + i;
+            }
+        }
+        return size();
+    }
+
+    /**
+     * Furthest start + lookahead of statements [from, to), which must not be empty.
+     */
+    int reach(int from, int to) {
+        int reach = Integer.MIN_VALUE;
+        for (int p = chunkOf(from); p < count && firsts[p] < to; p++) {
+            Chunk chunk = chunks[p];
+            if (firsts[p] >= from && firsts[p + 1] <= to) {
+                reach = Math.max(reach, chunk.reach + shifts[p]);
+                continue;
+            }
+            for (int i = Math.max(from, firsts[p]); i < Math.min(to, firsts[p + 1]); i++) {
+                int at = i - firsts[p];
+                reach = Math.max(reach, chunk.starts[at] + shifts[p] + chunk.nodes[at].lookahead);
+            }
+        }
+        return reach;
+    }
+
+    // Chunk holding index: the last one accessed or the one after it when walking in order, else a search
+    int chunkOf(int index) {
+        int p = hint;
+        if (p < count && index >= firsts[p]) {
+            if (index < firsts[p + 1]) return p;
+            if (p + 1 < count && index < firsts[p + 2]) {
+                hint = p + 1;
+                return p + 1;
+            }
+        }
+        if (index < 0 || index >= size()) throw new IndexOutOfBoundsException(index);
+        int low = 0;
+        int high = count - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (firsts[mid] <= index) low = mid;
+            else high = mid - 1;
+        }
+        hint = low;
+        return low;
+    }
+
+    /**
+     * Collects the statements of a node being built, one by one or as runs of an old list.
+     */
+    static final class Builder {
+        // Allocated once a chunk is made; most statements have no nested ones
+        private Chunk[] chunks = NONE.chunks;
+        private int[] shifts = NO_INTS;
+        private boolean[] leads = NO_FLAGS;
+        private int[] firsts = NONE.firsts;
+        private int count;
+
+        // Statements added one by one since the last chunk
+        private int[] starts = NO_INTS;
+        private Node[] nodes = NO_NODES;
+        private boolean[] follows = NO_FLAGS;
+        private int pending;
+
+        private int size;
+        private int end;
+
+        int size() {
+            return size;
+        }
+
+        /**
+         * Offset just past the last statement; only if there is one.
+         */
+        int end() {
+            return end;
+        }
+
+        void add(int start, Node node, boolean follow) {
+            if (pending == CHUNK) flush();
+            if (pending == nodes.length) {
+                int capacity = Math.min(CHUNK, Math.max(4, pending * 2));
+                starts = Arrays.copyOf(starts, capacity);
+                nodes = Arrays.copyOf(nodes, capacity);
+                follows = Arrays.copyOf(follows, capacity);
+            }
+            starts[pending] = start;
+            nodes[pending] = node;
+            follows[pending] = follow;
+            pending++;
+            size++;
+            end = start + node.length;
+        }
+
+        /**
+         * Adds statements [from, to) of list with delta added to their offsets, the first of them
+         * following the one before if follow is set. The chunks they fill completely are shared,
+         * unless they are small or the statements added one by one before them still have room
+         * for them, so that the chunks of a list edited over and over stay large.
+         */
+        void addAll(Children list, int from, int to, int delta, boolean follow) {
+            boolean first = true;
+            for (int p = from < to ? list.chunkOf(from) : 0; from < to; p++) {
+                Chunk chunk = list.chunks[p];
+                int shift = list.shifts[p] + delta;
+                int at = from - list.firsts[p];
+                int n = Math.min(to, list.firsts[p + 1]) - from;
+                if (at == 0 && n == chunk.size() && (pending == 0 ? n >= CHUNK / 2 : pending + n > CHUNK)) {
+                    flush();
+                    append(chunk, shift, first ? follow : list.leads[p]);
+                    size += n;
+                    end = chunk.end() + shift;
+                } else {
+                    for (int i = at; i < at + n; i++) {
+                        boolean lead = i == at && first ? follow : i == 0 ? list.leads[p] : chunk.follows[i];
+                        add(chunk.starts[i] + shift, chunk.nodes[i], lead);
+                    }
+                }
+                from += n;
+                first = false;
+            }
+        }
+
+        Children build() {
+            if (count == 0) {
+                if (pending == 0) return NONE;
+                Chunk chunk = new Chunk(Arrays.copyOf(starts, pending), Arrays.copyOf(nodes, pending),
+                        Arrays.copyOf(follows, pending));
+                return new Children(new Chunk[] {chunk}, NO_SHIFT, follows[0] ? LEAD : NO_LEAD, FIRSTS[pending], 1);
+            }
+            flush();
+            return new Children(Arrays.copyOf(chunks, count), Arrays.copyOf(shifts, count),
+                    Arrays.copyOf(leads, count), Arrays.copyOf(firsts, count + 1), count);
+        }
+
+        // Makes a chunk of the statements added one by one
+        private void flush() {
+            if (pending == 0) return;
+            Chunk chunk = new Chunk(Arrays.copyOf(starts, pending), Arrays.copyOf(nodes, pending),
+                    Arrays.copyOf(follows, pending));
+            append(chunk, 0, follows[0]);
+            pending = 0;
+        }
+
+        private void append(Chunk chunk, int shift, boolean lead) {
+            if (count == chunks.length) {
+                int capacity = Math.max(2, count * 2);
+                chunks = Arrays.copyOf(chunks, capacity);
+                shifts = Arrays.copyOf(shifts, capacity);
+                leads = Arrays.copyOf(leads, capacity);
+                firsts = Arrays.copyOf(firsts, capacity + 1);
+            }
+            chunks[count] = chunk;
+            shifts[count] = shift;
+            leads[count] = lead;
+            firsts[count + 1] = firsts[count] + chunk.size();
+            count++;
+        }
+    }
+}
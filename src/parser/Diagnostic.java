@@ -0,0 +1,31 @@
+package parser;
+
+import model.TokenBuffer;
+
+/**
+ * A syntax error and the character range of the token it was found at; at the end of input the
+ * range is empty and sits at the end of the text.
+ */
+public class Diagnostic {
+    public final String message;
+    public final int start;
+    public final int end;
+
+    public Diagnostic(String message, int start, int end) {
+        this.message = message;
+        this.start = start;
+        this.end = end;
+    }
+
+    // Diagnostic at token index of tokens, tokens.size() meaning the end of input
+    static Diagnostic at(TokenBuffer tokens, int index, String message) {
+        if (index < tokens.size()) return new Diagnostic(message, tokens.start(index), tokens.end(index));
+        int length = tokens.source().length();
+        return new Diagnostic(message, length, length);
+    }
+
+    @Override
+    public String toString() {
+        return message + " (" + start + "-" + end + ")";
+    }
+}
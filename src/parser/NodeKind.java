@@ -0,0 +1,54 @@
+package parser;
+
+/**
+ * Kind of a node of an Ast. Which token a node points at and what its children are depends on
+ * the kind; see the constants.
+ */
+public enum NodeKind {
+    // Token: none (-1). Children: the statements
+    PROGRAM,
+    // Token: '{'. Children: the statements
+    BLOCK,
+    // Token: the name. Children: the value, an ARRAY or an expression
+    DECLARATION,
+    // Token: '['. Children: the elements
+    ARRAY,
+    // Token: the name. Children: the index expression, if any, and the value
+    ASSIGNMENT,
+    // Token: the keyword. Children: the condition and the blocks
+    IF,
+    WHILE,
+    // Token: the keyword. Children: the block and the condition
+    DO_WHILE,
+    // Token: the keyword. Children: initialisation, condition, update and block
+    FOR,
+    // Token: the keyword. Children: the expression, then CASE and DEFAULT
+    SWITCH,
+    // Token: the keyword. Children: the value (CASE only) and the statements
+    CASE,
+    DEFAULT,
+    // Token: the name. Children: the PARAMETERs and the block
+    FUNCTION,
+    // Token: the name
+    PARAMETER,
+    // Token: the keyword. Children: the value
+    RETURN,
+    // Token: the keyword
+    BREAK,
+    CONTINUE,
+    // Token: the keyword. Children: the value
+    PRINT,
+    // Token: the operator. Children: the operands; parentheses leave no node
+    BINARY,
+    UNARY,
+    // Token: the literal
+    LITERAL,
+    // Token: the identifier
+    NAME,
+    // Token: the identifier. Children: the index expression
+    INDEX,
+    // Token: the identifier. Children: the callee, a NAME or INDEX, then the arguments
+    CALL,
+    // Token: the first of the statement. Children: whatever was parsed before the error
+    ERROR
+}
@@ -1,369 +1,817 @@
 package parser;
 
 import model.Token;
+import model.TokenBuffer;
+import model.TokenKind;
 import model.TokenType;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
+/**
+ * Descent parser for statements; expressions are parsed by precedence climbing over an explicit
+ * stack (see parseExpression()). Statements do not recurse either: a statement parses up to the
+ * block or statement list it opens and leaves the rest to an entry of a statement stack (see
+ * finish()), so blocks and expressions can both nest arbitrarily deep. Syntax errors do not
+ * abort the parse: the first one in a statement is reported, the rest of the statement is skipped
+ * up to a ';' or a '}' and parsing goes on with the next one, so a single pass finds the errors of
+ * every statement.
+ */
 public class Parser {
-    private List<Token> tokens;
+    private final TokenBuffer tokens;
     private int position = 0;
+    // Set when parsing for a SyntaxTree: records statements and reuses unchanged ones
+    private final SyntaxTree.Builder builder;
+    // Furthest token index looked at, tokens.size() once the end of input was
+    private int furthest;
+    // Position skipTrivia() last stopped at, and the type (null at the end of input) and kind of
+    // the token there, which the parse methods ask for over and over
+    private int skipped = -1;
+    private TokenType currentType;
+    private TokenKind currentKind = TokenKind.NONE;
+    // An error was reported and the statement has not been recovered yet: the parse methods see
+    // the end of input and return, and no further errors are reported
+    private boolean panic;
+    private final List<Diagnostic> diagnostics = new ArrayList<>();
+    // Set by parseToAst(): the nodes parsed so far
+    private Ast ast;
+
+    // Expression stack entries: a prefix operator, a binary operator waiting for its right
+    // operand, or a parenthesis, index or argument list being parsed
+    private static final int UNARY = 0;
+    private static final int BINARY = 1;
+    private static final int GROUP = 2;
+    private static final int INDEX = 3;
+    private static final int CALL = 4;
+    // Four ints an entry: type, token (operator or called name), first node and first token of
+    // the operand it belongs to
+    private int[] stack = new int[64];
+    private int top;
+
+    // Statement stack entries: a statement, a block being parsed, or a statement waiting for the
+    // block or statement list it opened
+    private static final int STATEMENT = 0;
+    private static final int BLOCK = 1;
+    private static final int IF = 2;
+    private static final int ELSE = 3;
+    private static final int WHILE = 4;
+    private static final int DO = 5;
+    private static final int FOR = 6;
+    private static final int FUNCTION = 7;
+    private static final int SWITCH = 8;
+    private static final int CASE = 9;
+    private static final int DEFAULT = 10;
+    // Five ints an entry: type, first node and first token, then for a statement the position it
+    // starts at and the furthest token looked at before it, for a function its name
+    private int[] nesting = new int[80];
+    private int depth;
 
     public Parser(List<Token> tokens) {
+        this(TokenBuffer.of(tokens));
+    }
+
+    public Parser(TokenBuffer tokens) {
+        this(tokens, null);
+    }
+
+    Parser(TokenBuffer tokens, SyntaxTree.Builder builder) {
         this.tokens = tokens;
+        this.builder = builder;
+    }
+
+    // Index of the current token, skipping whitespace and comments; -1 at the end of input
+    private int peek() {
+        return panic ? -1 : skipTrivia();
     }
 
-    private Token peek() {
-        while (position < tokens.size() && tokens.get(position).type == TokenType.COMMENT) {
-            position++; // skip comments
+    private int skipTrivia() {
+        if (position != skipped) {
+            int size = tokens.size();
+            currentType = null;
+            currentKind = TokenKind.NONE;
+            for (; position < size; position++) {
+                TokenType type = tokens.type(position);
+                if (type != TokenType.COMMENT && type != TokenType.WHITESPACE) {
+                    currentType = type;
+                    currentKind = tokens.kind(position);
+                    break;
+                }
+            }
+            skipped = position;
+            if (position > furthest) furthest = position;
         }
-        return position < tokens.size() ? tokens.get(position) : null;
+        return currentType != null ? position : -1;
     }
 
+    // Kind of the current token; NONE at the end of input
+    private TokenKind peekKind() {
+        return peek() != -1 ? currentKind : TokenKind.NONE;
+    }
 
-    private Token consume(TokenType expected) {
-        Token token = peek();
-        if (token != null && token.type == expected) {
+    // Index of the token after the current one; as before, only whitespace is skipped here
+    private int peekNext() {
+        int next = position + 1;
+        while (next < tokens.size() && tokens.type(next) == TokenType.WHITESPACE) {
+            next++;
+        }
+        if (next > furthest) furthest = next;
+        return next < tokens.size() ? next : -1;
+    }
+
+    private boolean nextIs(TokenKind kind) {
+        int next = peekNext();
+        return next != -1 && tokens.kind(next) == kind;
+    }
+
+    private String describe(int token) {
+        return token != -1 ? tokens.get(token).toString() : "null";
+    }
+
+    // Reports a syntax error at token (-1: the end of input), unless one is being recovered from
+    private void error(String message, int token) {
+        if (panic) return;
+        panic = true;
+        int index = token != -1 ? token : tokens.size();
+        if (builder != null) {
+            builder.error(message, index);
+        } else {
+            diagnostics.add(Diagnostic.at(tokens, index, message));
+        }
+    }
+
+    // Records an identifier declared or used at token for the SyntaxTree's symbol index
+    private void symbol(int token, boolean declaration) {
+        if (builder != null && token != -1) builder.symbol(tokens, token, declaration);
+    }
+
+    // Index of the consumed token, or -1 after reporting an error
+    private int consume(TokenType expected) {
+        int token = peek();
+        if (token != -1 && currentType == expected) {
             position++;
             return token;
-        } else {
-            throw new RuntimeException("Expected " + expected + " but got " + (token != null ? token.type + " : '" + token.value + "'" : "null"));
         }
+        if (!panic) {
+            error("Expected " + expected + " but got " + (token != -1 ? tokens.type(token) + " : '" + tokens.text(token) + "'" : "null"), token);
+        }
+        return -1;
     }
 
-    private Token consume(TokenType expected, String value) {
-        Token token = peek();
-        if (token != null && token.type == expected && token.value.equals(value)) {
+    private int consume(TokenKind expected) {
+        int token = peek();
+        if (token != -1 && currentKind == expected) {
             position++;
             return token;
-        } else {
-            throw new RuntimeException("Expected " + expected + " with value '" + value + "', but got " + token);
         }
+        if (!panic) {
+            error("Expected " + expected.type + " with value '" + expected.text + "', but got " + describe(token), token);
+        }
+        return -1;
     }
 
-    private boolean match(TokenType type, String value) {
-        Token t = peek();
-        return t != null && t.type == type && t.value.equals(value);
+    private boolean match(TokenKind kind) {
+        return peekKind() == kind;
     }
 
     private boolean match(TokenType type) {
-        Token t = peek();
-        return t != null && t.type == type;
+        return peek() != -1 && currentType == type;
     }
 
+    /**
+     * Parses the whole program and throws the first syntax error, if any.
+     */
     public void parseProgram() {
-        while (peek() != null) {
-            parseStatement();
-        }
+        List<Diagnostic> errors = parseWithRecovery();
+        if (!errors.isEmpty()) throw new RuntimeException(errors.get(0).message);
         System.out.println("✅ Program parsed successfully.");
     }
 
+    /**
+     * Parses the whole program and returns its syntax errors in order.
+     */
+    public List<Diagnostic> parseWithRecovery() {
+        parseStatements();
+        return diagnostics;
+    }
+
+    /**
+     * Parses the whole program into an Ast; its diagnostics are those parseWithRecovery() returns.
+     */
+    public Ast parseToAst() {
+        if (builder != null) throw new IllegalStateException("Parser builds a SyntaxTree");
+        ast = new Ast(tokens);
+        ast.setDiagnostics(parseWithRecovery());
+        ast.add(NodeKind.PROGRAM, 0, -1, 0, tokens.size());
+        ast.trim();
+        return ast;
+    }
+
+    int position() {
+        return position;
+    }
+
+    // Still recovering from an error when the input ran out
+    boolean inPanic() {
+        return panic;
+    }
+
+    void parseStatements() {
+        while (peek() != -1) {
+            statement();
+        }
+    }
+
+    // A statement in a statement list, with the statements nested in it
+    private void statement() {
+        int base = depth;
+        openStatement();
+        finish(base);
+    }
+
+    // Starts a statement in a statement list: reused from the previous tree if unchanged, else
+    // parsed up to the block or statement list it opens
+    private void openStatement() {
+        int start = peek();
+        if (builder == null || start == -1) {
+            nest(STATEMENT, mark(), start, position, 0);
+            startStatement();
+            return;
+        }
+        // Where the whitespace and comments ahead of the statement begin
+        int before = start;
+        while (before > 0) {
+            TokenType type = tokens.type(before - 1);
+            if (type != TokenType.COMMENT && type != TokenType.WHITESPACE) break;
+            before--;
+        }
+        if (builder.reuse(before, start)) {
+            position = builder.reusedEnd;
+            furthest = Math.max(furthest, builder.reusedLookahead);
+            return;
+        }
+        nest(STATEMENT, 0, start, position, furthest);
+        builder.open(before, start);
+        startStatement();
+    }
+
+    // Ends the statement of the entry at at, which was taken off the stack
+    private void closeStatement(int at) {
+        int start = nesting[at + 2];
+        if (builder == null || start == -1) {
+            if (panic) {
+                synchronize(start);
+                node(NodeKind.ERROR, nesting[at + 1], start, nesting[at + 3]);
+            }
+            return;
+        }
+        if (panic) synchronize(start);
+        // A statement still in panic ran into the end of input and is not reused later
+        builder.close(position, furthest, !panic);
+        furthest = Math.max(nesting[at + 4], furthest);
+    }
+
+    /**
+     * Goes on with the innermost entry of the statement stack, which either starts the next
+     * statement of its list or is complete and taken off, until the entries above base are all
+     * done. Nodes are added in the order a recursive descent through the statements adds them.
+     */
+    private void finish(int base) {
+        while (depth > base) {
+            int at = depth - 5;
+            int mark = nesting[at + 1];
+            int start = nesting[at + 2];
+            switch (nesting[at]) {
+                case STATEMENT -> {
+                    depth = at;
+                    closeStatement(at);
+                }
+                case BLOCK -> {
+                    if (peek() != -1 && !match(TokenKind.SEP_RBRACE)) {
+                        openStatement();
+                    } else {
+                        depth = at;
+                        consume(TokenKind.SEP_RBRACE);
+                        node(NodeKind.BLOCK, mark, start, start);
+                    }
+                }
+                case IF -> {
+                    if (match(TokenKind.KW_ELSE)) {
+                        nesting[at] = ELSE;
+                        consume(TokenKind.KW_ELSE);
+                        openBlock();
+                    } else {
+                        depth = at;
+                        node(NodeKind.IF, mark, start, start);
+                    }
+                }
+                case ELSE -> {
+                    depth = at;
+                    node(NodeKind.IF, mark, start, start);
+                }
+                case WHILE -> {
+                    depth = at;
+                    node(NodeKind.WHILE, mark, start, start);
+                }
+                case DO -> {
+                    depth = at;
+                    consume(TokenKind.KW_WHILE);
+                    consume(TokenKind.SEP_LPAREN);
+                    parseExpression();
+                    consume(TokenKind.SEP_RPAREN);
+                    consume(TokenKind.SEP_SEMICOLON);
+                    node(NodeKind.DO_WHILE, mark, start, start);
+                }
+                case FOR -> {
+                    depth = at;
+                    node(NodeKind.FOR, mark, start, start);
+                }
+                case FUNCTION -> {
+                    depth = at;
+                    node(NodeKind.FUNCTION, mark, nesting[at + 3], start);
+                }
+                case SWITCH -> {
+                    if (match(TokenKind.KW_CASE) || match(TokenKind.KW_DEFAULT)) {
+                        int label = mark();
+                        int labelStart = here();
+                        if (match(TokenKind.KW_CASE)) {
+                            consume(TokenKind.KW_CASE);
+                            parseExpression();
+                            consume(TokenKind.SEP_COLON);
+                            nest(CASE, label, labelStart, 0, 0);
+                        } else {
+                            consume(TokenKind.KW_DEFAULT);
+                            consume(TokenKind.SEP_COLON);
+                            nest(DEFAULT, label, labelStart, 0, 0);
+                        }
+                    } else {
+                        depth = at;
+                        consume(TokenKind.SEP_RBRACE);
+                        node(NodeKind.SWITCH, mark, start, start);
+                    }
+                }
+                case CASE -> {
+                    if (!panic && !match(TokenKind.KW_CASE) && !match(TokenKind.KW_DEFAULT) && !match(TokenKind.SEP_RBRACE)) {
+                        openStatement();
+                    } else {
+                        depth = at;
+                        node(NodeKind.CASE, mark, start, start);
+                    }
+                }
+                default -> {
+                    if (!panic && !match(TokenKind.SEP_RBRACE)) {
+                        openStatement();
+                    } else {
+                        depth = at;
+                        node(NodeKind.DEFAULT, mark, start, start);
+                    }
+                }
+            }
+        }
+    }
+
+    private void nest(int type, int mark, int start, int token, int outer) {
+        if (depth + 5 > nesting.length) nesting = Arrays.copyOf(nesting, nesting.length * 2);
+        nesting[depth] = type;
+        nesting[depth + 1] = mark;
+        nesting[depth + 2] = start;
+        nesting[depth + 3] = token;
+        nesting[depth + 4] = outer;
+        depth += 5;
+    }
+
+    // Ast size before the children of a node are parsed
+    private int mark() {
+        return ast != null ? ast.size() : 0;
+    }
+
+    // Index of the first token of a node about to be parsed
+    private int here() {
+        if (!panic) skipTrivia();
+        return position;
+    }
+
+    // Adds a node ending after the last token consumed, if building an Ast
+    private void node(NodeKind kind, int mark, int token, int start) {
+        if (ast == null) return;
+        int end = position;
+        while (end > 0 && (tokens.type(end - 1) == TokenType.COMMENT || tokens.type(end - 1) == TokenType.WHITESPACE)) {
+            end--;
+        }
+        // A node that consumed nothing, while recovering from an error, is empty
+        ast.add(kind, mark, token, Math.min(start, end), end);
+    }
+
+    /**
+     * Skips the rest of a statement with an error: up to and including a ';', or up to a '}'
+     * closing the enclosing block, which is left to it. Braces opened while skipping are
+     * skipped along with what they contain, and a '}' where the statement should have started
+     * is skipped too, so that every statement makes progress.
+     */
+    private void synchronize(int start) {
+        int depth = 0;
+        for (int token = skipTrivia(); token != -1; token = skipTrivia()) {
+            TokenKind kind = tokens.kind(token);
+            if (kind == TokenKind.SEP_SEMICOLON && depth == 0) {
+                position++;
+                panic = false;
+                return;
+            }
+            if (kind == TokenKind.SEP_LBRACE) {
+                depth++;
+            } else if (kind == TokenKind.SEP_RBRACE) {
+                if (depth == 0) {
+                    if (token == start) position++;
+                    panic = false;
+                    return;
+                }
+                if (--depth == 0) {
+                    position++;
+                    panic = false;
+                    return;
+                }
+            }
+            position++;
+        }
+    }
+
     public void parseStatement() {
-        if (match(TokenType.KEYWORD, "if")) {
-            parseIfStatement();
-        } else if (match(TokenType.KEYWORD, "while")) {
-            parseWhileStatement();
-        } else if (match(TokenType.KEYWORD, "do")) {
-            parseDoWhileStatement();
-        } else if (match(TokenType.KEYWORD, "for")) {
-            parseForStatement();
-        } else if (match(TokenType.KEYWORD, "switch")) {
-            parseSwitchStatement();
-        } else if (match(TokenType.KEYWORD, "function")) {
-            parseFunctionDeclaration();
-        } else if (match(TokenType.KEYWORD, "return")) {
-            consume(TokenType.KEYWORD, "return");
-            parseExpression();
-            consume(TokenType.SEPARATOR, ";");
-        } else if (match(TokenType.KEYWORD, "break") || match(TokenType.KEYWORD, "continue")) {
-            consume(TokenType.KEYWORD);
-            consume(TokenType.SEPARATOR, ";");
-        } else if (match(TokenType.KEYWORD, "print")) {
-            consume(TokenType.KEYWORD, "print");
-            consume(TokenType.SEPARATOR, "(");
-            parseExpression();
-            consume(TokenType.SEPARATOR, ")");
-            consume(TokenType.SEPARATOR, ";");
-        } else if (match(TokenType.SEPARATOR, "{")) {
-            parseBlock();
-        } else if (peek().type == TokenType.KEYWORD && isTypeKeyword(peek().value)) {
-            parseVariableDeclaration();
-        } else if (peek().type == TokenType.IDENTIFIER) {
-            Token next = tokens.size() > position + 1 ? tokens.get(position + 1) : null;
-            if (next != null && next.type == TokenType.SEPARATOR && next.value.equals("(")) {
+        int base = depth;
+        startStatement();
+        finish(base);
+    }
+
+    // Parses a statement up to the block or statement list it opens, which are left on the
+    // statement stack
+    private void startStatement() {
+        int mark = mark();
+        int start = here();
+        switch (peekKind()) {
+            case KW_IF -> parseIfStatement();
+            case KW_WHILE -> parseWhileStatement();
+            case KW_DO -> parseDoWhileStatement();
+            case KW_FOR -> parseForStatement();
+            case KW_SWITCH -> parseSwitchStatement();
+            case KW_FUNCTION -> parseFunctionDeclaration();
+            case KW_RETURN -> {
+                consume(TokenKind.KW_RETURN);
                 parseExpression();
-                consume(TokenType.SEPARATOR, ";");
-            } else {
-                parseAssignment();
-                consume(TokenType.SEPARATOR, ";");
+                consume(TokenKind.SEP_SEMICOLON);
+                node(NodeKind.RETURN, mark, start, start);
+            }
+            case KW_BREAK, KW_CONTINUE -> {
+                int keyword = consume(TokenType.KEYWORD);
+                consume(TokenKind.SEP_SEMICOLON);
+                node(tokens.kind(keyword) == TokenKind.KW_BREAK ? NodeKind.BREAK : NodeKind.CONTINUE, mark, keyword, start);
+            }
+            case KW_PRINT -> {
+                consume(TokenKind.KW_PRINT);
+                consume(TokenKind.SEP_LPAREN);
+                parseExpression();
+                consume(TokenKind.SEP_RPAREN);
+                consume(TokenKind.SEP_SEMICOLON);
+                node(NodeKind.PRINT, mark, start, start);
+            }
+            case SEP_LBRACE -> openBlock();
+            case KW_INT, KW_BOOL, KW_STRING, KW_VOID -> parseVariableDeclaration();
+            default -> {
+                if (match(TokenType.IDENTIFIER)) {
+                    if (nextIs(TokenKind.SEP_LPAREN)) {
+                        parseExpression();
+                        consume(TokenKind.SEP_SEMICOLON);
+                    } else {
+                        parseAssignment();
+                        consume(TokenKind.SEP_SEMICOLON);
+                    }
+                } else {
+                    error("Bilinmeyen ifade türü: " + describe(peek()), peek());
+                }
             }
-        } else {
-            throw new RuntimeException("Bilinmeyen ifade türü: " + peek());
         }
     }
 
-    private boolean isTypeKeyword(String value) {
-        return value.equals("int") || value.equals("bool") || value.equals("string") || value.equals("void");
+    private boolean isTypeKeyword(TokenKind kind) {
+        return switch (kind) {
+            case KW_INT, KW_BOOL, KW_STRING, KW_VOID -> true;
+            default -> false;
+        };
     }
 
     private void parseVariableDeclaration() {
-        Token typeToken = consume(TokenType.KEYWORD);
-        String type = typeToken.value;
-        consume(TokenType.IDENTIFIER);
+        int mark = mark();
+        int start = here();
+        TokenKind type = tokens.kind(consume(TokenType.KEYWORD));
+        int name = consume(TokenType.IDENTIFIER);
+        symbol(name, true);
 
         boolean isArray = false;
-        if (match(TokenType.SEPARATOR, "[") && tokens.size() > position + 1 &&
-            tokens.get(position + 1).type == TokenType.SEPARATOR &&
-            tokens.get(position + 1).value.equals("]")) {
-            consume(TokenType.SEPARATOR, "[");
-            consume(TokenType.SEPARATOR, "]");
+        if (match(TokenKind.SEP_LBRACKET) && nextIs(TokenKind.SEP_RBRACKET)) {
+            consume(TokenKind.SEP_LBRACKET);
+            consume(TokenKind.SEP_RBRACKET);
             isArray = true;
         }
 
-        Token eq = consume(TokenType.OPERATOR);
-        if (!eq.value.equals("=")) throw new RuntimeException("Expected '=' in declaration");
+        int eq = consume(TokenType.OPERATOR);
+        if (eq != -1 && tokens.kind(eq) != TokenKind.OP_ASSIGN) error("Expected '=' in declaration", eq);
 
-        if (isArray && match(TokenType.SEPARATOR, "[")) {
-            consume(TokenType.SEPARATOR, "[");
-            if (!match(TokenType.SEPARATOR, "]")) {
+        if (isArray && match(TokenKind.SEP_LBRACKET)) {
+            int elements = mark();
+            int bracket = consume(TokenKind.SEP_LBRACKET);
+            if (!match(TokenKind.SEP_RBRACKET)) {
                 validateValueType(type, false);
-                while (match(TokenType.SEPARATOR, ",")) {
-                    consume(TokenType.SEPARATOR, ",");
+                while (match(TokenKind.SEP_COMMA)) {
+                    consume(TokenKind.SEP_COMMA);
                     validateValueType(type, false);
                 }
             }
-            consume(TokenType.SEPARATOR, "]");
+            consume(TokenKind.SEP_RBRACKET);
+            node(NodeKind.ARRAY, elements, bracket, bracket);
         } else {
             validateValueType(type, false);
         }
 
-        consume(TokenType.SEPARATOR, ";");
+        consume(TokenKind.SEP_SEMICOLON);
+        node(NodeKind.DECLARATION, mark, name, start);
     }
 
-    private void validateValueType(String type, boolean isArray) {
+    private void validateValueType(TokenKind type, boolean isArray) {
         if (!isArray) {
-            if (type.equals("int") && !match(TokenType.NUMBER)) {
-                throw new RuntimeException("Only integer literals can be assigned to int");
-            } else if (type.equals("bool") && !(match(TokenType.KEYWORD, "true") || match(TokenType.KEYWORD, "false") || match(TokenType.KEYWORD, "null"))) {
-                throw new RuntimeException("Only true, false, or null can be assigned to bool");
-            } else if (type.equals("string") && !match(TokenType.STRING)) {
-                throw new RuntimeException("Only string literals can be assigned to string");
+            TokenKind value = peekKind();
+            if (type == TokenKind.KW_INT && !match(TokenType.NUMBER)) {
+                error("Only integer literals can be assigned to int", peek());
+            } else if (type == TokenKind.KW_BOOL && !(value == TokenKind.KW_TRUE || value == TokenKind.KW_FALSE || value == TokenKind.KW_NULL)) {
+                error("Only true, false, or null can be assigned to bool", peek());
+            } else if (type == TokenKind.KW_STRING && !match(TokenType.STRING)) {
+                error("Only string literals can be assigned to string", peek());
             }
             parseExpression();
         }
     }
 
     private void parseAssignment() {
-        consume(TokenType.IDENTIFIER);
+        int mark = mark();
+        int start = here();
+        int name = consume(TokenType.IDENTIFIER);
+        symbol(name, false);
 
         // Array assignment (arr[0] = ...)
-        if (match(TokenType.SEPARATOR, "[")) {
-            consume(TokenType.SEPARATOR, "[");
+        if (match(TokenKind.SEP_LBRACKET)) {
+            consume(TokenKind.SEP_LBRACKET);
             parseExpression();
-            consume(TokenType.SEPARATOR, "]");
+            consume(TokenKind.SEP_RBRACKET);
         }
 
-        Token eq = consume(TokenType.OPERATOR);
-        if (!eq.value.equals("=")) throw new RuntimeException("Expected '='");
+        int eq = consume(TokenType.OPERATOR);
+        if (eq != -1 && tokens.kind(eq) != TokenKind.OP_ASSIGN) error("Expected '='", eq);
         parseExpression();
+        node(NodeKind.ASSIGNMENT, mark, name, start);
     }
 
 
 
     private void parseIfStatement() {
-        consume(TokenType.KEYWORD, "if");
-        consume(TokenType.SEPARATOR, "(");
+        int mark = mark();
+        int start = here();
+        consume(TokenKind.KW_IF);
+        consume(TokenKind.SEP_LPAREN);
         parseExpression();
-        consume(TokenType.SEPARATOR, ")");
-        parseBlock();
-        if (match(TokenType.KEYWORD, "else")) {
-            consume(TokenType.KEYWORD, "else");
-            parseBlock();
-        }
+        consume(TokenKind.SEP_RPAREN);
+        nest(IF, mark, start, 0, 0);
+        openBlock();
     }
 
     private void parseWhileStatement() {
-        consume(TokenType.KEYWORD, "while");
-        consume(TokenType.SEPARATOR, "(");
+        int mark = mark();
+        int start = here();
+        consume(TokenKind.KW_WHILE);
+        consume(TokenKind.SEP_LPAREN);
         parseExpression();
-        consume(TokenType.SEPARATOR, ")");
-        parseBlock();
+        consume(TokenKind.SEP_RPAREN);
+        nest(WHILE, mark, start, 0, 0);
+        openBlock();
     }
 
     private void parseDoWhileStatement() {
-        consume(TokenType.KEYWORD, "do");
-        parseBlock();
-        consume(TokenType.KEYWORD, "while");
-        consume(TokenType.SEPARATOR, "(");
-        parseExpression();
-        consume(TokenType.SEPARATOR, ")");
-        consume(TokenType.SEPARATOR, ";");
+        int mark = mark();
+        int start = here();
+        consume(TokenKind.KW_DO);
+        nest(DO, mark, start, 0, 0);
+        openBlock();
     }
 
     private void parseForStatement() {
-        consume(TokenType.KEYWORD, "for");
-        consume(TokenType.SEPARATOR, "(");
+        int mark = mark();
+        int start = here();
+        consume(TokenKind.KW_FOR);
+        consume(TokenKind.SEP_LPAREN);
         parseAssignment();
-        consume(TokenType.SEPARATOR, ";");
+        consume(TokenKind.SEP_SEMICOLON);
         parseExpression();
-        consume(TokenType.SEPARATOR, ";");
+        consume(TokenKind.SEP_SEMICOLON);
         parseAssignment();
-        consume(TokenType.SEPARATOR, ")");
-        parseBlock();
+        consume(TokenKind.SEP_RPAREN);
+        nest(FOR, mark, start, 0, 0);
+        openBlock();
     }
 
     private void parseSwitchStatement() {
-        consume(TokenType.KEYWORD, "switch");
-        consume(TokenType.SEPARATOR, "(");
+        int mark = mark();
+        int start = here();
+        consume(TokenKind.KW_SWITCH);
+        consume(TokenKind.SEP_LPAREN);
         parseExpression();
-        consume(TokenType.SEPARATOR, ")");
-        consume(TokenType.SEPARATOR, "{");
-        while (match(TokenType.KEYWORD, "case") || match(TokenType.KEYWORD, "default")) {
-            if (match(TokenType.KEYWORD, "case")) {
-                consume(TokenType.KEYWORD, "case");
-                parseExpression();
-                consume(TokenType.SEPARATOR, ":");
-                while (!match(TokenType.KEYWORD, "case") && !match(TokenType.KEYWORD, "default") && !match(TokenType.SEPARATOR, "}")) {
-                    parseStatement();
-                }
-            } else {
-                consume(TokenType.KEYWORD, "default");
-                consume(TokenType.SEPARATOR, ":");
-                while (!match(TokenType.SEPARATOR, "}")) {
-                    parseStatement();
-                }
-            }
-        }
-        consume(TokenType.SEPARATOR, "}");
+        consume(TokenKind.SEP_RPAREN);
+        consume(TokenKind.SEP_LBRACE);
+        nest(SWITCH, mark, start, 0, 0);
     }
 
     private void parseFunctionDeclaration() {
-        consume(TokenType.KEYWORD, "function");
-        if (isTypeKeyword(peek().value)) {
+        int mark = mark();
+        int start = here();
+        consume(TokenKind.KW_FUNCTION);
+        if (isTypeKeyword(peekKind())) {
             consume(TokenType.KEYWORD);
         }
-        consume(TokenType.IDENTIFIER);
-        consume(TokenType.SEPARATOR, "(");
-        if (isTypeKeyword(peek().value)) {
+        int name = consume(TokenType.IDENTIFIER);
+        symbol(name, true);
+        consume(TokenKind.SEP_LPAREN);
+        if (isTypeKeyword(peekKind())) {
             parseTypedParameterList();
         }
-        consume(TokenType.SEPARATOR, ")");
-        parseBlock();
+        consume(TokenKind.SEP_RPAREN);
+        nest(FUNCTION, mark, start, name, 0);
+        openBlock();
     }
 
     private void parseTypedParameterList() {
-        consume(TokenType.KEYWORD);
-        consume(TokenType.IDENTIFIER);
-        while (match(TokenType.SEPARATOR, ",")) {
-            consume(TokenType.SEPARATOR, ",");
-            consume(TokenType.KEYWORD);
-            consume(TokenType.IDENTIFIER);
+        parseParameter();
+        while (match(TokenKind.SEP_COMMA)) {
+            consume(TokenKind.SEP_COMMA);
+            parseParameter();
         }
     }
 
-    private void parseBlock() {
-        consume(TokenType.SEPARATOR, "{");
-        while (peek() != null && !match(TokenType.SEPARATOR, "}")) {
-            parseStatement();
-        }
-        consume(TokenType.SEPARATOR, "}");
-    }
-
-    private void parseExpression() {
-        parseOr();
-    }
-
-    private void parseOr() {
-        parseAnd();
-        while (match(TokenType.OPERATOR, "||")) {
-            consume(TokenType.OPERATOR, "||");
-            parseAnd();
-        }
+    private void parseParameter() {
+        int mark = mark();
+        int start = here();
+        consume(TokenType.KEYWORD);
+        int name = consume(TokenType.IDENTIFIER);
+        symbol(name, true);
+        node(NodeKind.PARAMETER, mark, name, start);
     }
 
-    private void parseAnd() {
-        parseEquality();
-        while (match(TokenType.OPERATOR, "&&")) {
-            consume(TokenType.OPERATOR, "&&");
-            parseEquality();
-        }
+    // Parses the '{' of a block; its statements and '}' are parsed for the entry it leaves
+    private void openBlock() {
+        int mark = mark();
+        int start = here();
+        consume(TokenKind.SEP_LBRACE);
+        nest(BLOCK, mark, start, 0, 0);
     }
 
-    private void parseEquality() {
-        parseComparison();
-        while (match(TokenType.OPERATOR, "==") || match(TokenType.OPERATOR, "!=")) {
-            if (match(TokenType.OPERATOR, "==")) {
-                consume(TokenType.OPERATOR, "==");
-            } else {
-                consume(TokenType.OPERATOR, "!=");
+    /**
+     * Parses an expression by precedence climbing, without recursion: the operators waiting for
+     * their right operand, and the parentheses, indexes and calls the current operand is nested
+     * in, are entries of an explicit stack, so an expression nested however deeply costs stack
+     * entries rather than Java frames. Nodes are added in the order a recursive descent through
+     * the precedence levels adds them, binary operators being left-associative.
+     */
+    private void parseExpression() {
+        int base = top;
+        // First Ast node and first token of the operand being parsed
+        int operandMark = mark();
+        int operandStart = here();
+        operand:
+        while (true) {
+            TokenKind kind = peekKind();
+            while (kind == TokenKind.OP_MINUS || kind == TokenKind.OP_NOT) {
+                push(UNARY, consume(TokenType.OPERATOR), mark(), 0);
+                kind = peekKind();
             }
-            parseComparison();
-        }
-    }
 
-    private void parseComparison() {
-        parseAdditive();
-        while (match(TokenType.OPERATOR, "<") || match(TokenType.OPERATOR, ">") ||
-                match(TokenType.OPERATOR, "<=") || match(TokenType.OPERATOR, ">=")) {
-            consume(TokenType.OPERATOR);
-            parseAdditive();
-        }
-    }
+            // Prefix operators add no node until the operand is complete, so this is operandMark
+            int mark = mark();
+            int start = here();
+            switch (kind) {
+                case KW_TRUE, KW_FALSE, KW_NULL -> {
+                    consume(TokenType.KEYWORD);
+                    node(NodeKind.LITERAL, mark, start, start);
+                }
+                case SEP_LPAREN -> {
+                    consume(TokenKind.SEP_LPAREN);
+                    push(GROUP, -1, operandMark, operandStart);
+                    operandMark = mark();
+                    operandStart = here();
+                    continue operand;
+                }
+                default -> {
+                    if (match(TokenType.IDENTIFIER)) {
+                        symbol(consume(TokenType.IDENTIFIER), false);
+                        if (match(TokenKind.SEP_LBRACKET)) {
+                            consume(TokenKind.SEP_LBRACKET);
+                            push(INDEX, start, operandMark, operandStart);
+                            operandMark = mark();
+                            operandStart = here();
+                            continue operand;
+                        }
+                        node(NodeKind.NAME, mark, start, start);
+                        if (openCall(start, operandMark, operandStart)) {
+                            operandMark = mark();
+                            operandStart = here();
+                            continue operand;
+                        }
+                    } else if (match(TokenType.NUMBER) || match(TokenType.STRING)) {
+                        consume(tokens.type(peek()));
+                        node(NodeKind.LITERAL, mark, start, start);
+                    } else if (!panic) {
+                        error("Unexpected token in expression: " + describe(peek()), peek());
+                    }
+                }
+            }
 
-    private void parseAdditive() {
-        parseMultiplicative();
-        while (match(TokenType.OPERATOR, "+") || match(TokenType.OPERATOR, "-")) {
-            consume(TokenType.OPERATOR);
-            parseMultiplicative();
+            // The operand is complete
+            while (true) {
+                while (top > base && stack[top - 4] == UNARY) {
+                    top -= 4;
+                    node(NodeKind.UNARY, stack[top + 2], stack[top + 1], stack[top + 1]);
+                }
+                int precedence = precedence(peekKind());
+                while (top > base && stack[top - 4] == BINARY && precedence(tokens.kind(stack[top - 3])) >= precedence) {
+                    top -= 4;
+                    operandMark = stack[top + 2];
+                    operandStart = stack[top + 3];
+                    node(NodeKind.BINARY, operandMark, stack[top + 1], operandStart);
+                }
+                if (precedence > 0) {
+                    push(BINARY, consume(TokenType.OPERATOR), operandMark, operandStart);
+                    operandMark = mark();
+                    operandStart = here();
+                    continue operand;
+                }
+                if (top == base) return;
+
+                // The end of a nested expression, which completes the operand it is nested in
+                int type = stack[top - 4];
+                int name = stack[top - 3];
+                if (type == CALL && match(TokenKind.SEP_COMMA)) {
+                    consume(TokenKind.SEP_COMMA);
+                    operandMark = mark();
+                    operandStart = here();
+                    continue operand;
+                }
+                top -= 4;
+                operandMark = stack[top + 2];
+                operandStart = stack[top + 3];
+                if (type == GROUP) {
+                    consume(TokenKind.SEP_RPAREN);
+                } else if (type == INDEX) {
+                    consume(TokenKind.SEP_RBRACKET);
+                    node(NodeKind.INDEX, operandMark, name, name);
+                    if (openCall(name, operandMark, operandStart)) {
+                        operandMark = mark();
+                        operandStart = here();
+                        continue operand;
+                    }
+                } else {
+                    consume(TokenKind.SEP_RPAREN);
+                    node(NodeKind.CALL, operandMark, name, name);
+                }
+            }
         }
     }
 
-    private void parseMultiplicative() {
-        parseUnary();
-        while (match(TokenType.OPERATOR, "*") || match(TokenType.OPERATOR, "/")) {
-            consume(TokenType.OPERATOR);
-            parseUnary();
+    // Parses the '(' of a call of the operand just parsed, if there is one; true if the arguments
+    // are to be parsed next, else any call was complete
+    private boolean openCall(int name, int operandMark, int operandStart) {
+        if (!match(TokenKind.SEP_LPAREN)) return false;
+        consume(TokenKind.SEP_LPAREN);
+        if (!match(TokenKind.SEP_RPAREN)) {
+            push(CALL, name, operandMark, operandStart);
+            return true;
         }
+        consume(TokenKind.SEP_RPAREN);
+        node(NodeKind.CALL, operandMark, name, name);
+        return false;
     }
 
-    private void parseUnary() {
-        if (match(TokenType.OPERATOR, "-") || match(TokenType.OPERATOR, "!")) {
-            consume(TokenType.OPERATOR);
-            parseUnary();
-        } else {
-            parsePrimary();
-        }
+    // Binding strength of a binary operator, higher binding tighter; 0 for other tokens
+    private static int precedence(TokenKind kind) {
+        return switch (kind) {
+            case OP_OR -> 1;
+            case OP_AND -> 2;
+            case OP_EQ, OP_NE -> 3;
+            case OP_LT, OP_GT, OP_LE, OP_GE -> 4;
+            case OP_PLUS, OP_MINUS -> 5;
+            case OP_STAR, OP_SLASH -> 6;
+            default -> 0;
+        };
     }
 
-    private void parsePrimary() {
-        if (match(TokenType.IDENTIFIER)) {
-            Token ident = consume(TokenType.IDENTIFIER);
-            if (match(TokenType.SEPARATOR, "[")) {
-                consume(TokenType.SEPARATOR, "[");
-                parseExpression();
-                consume(TokenType.SEPARATOR, "]");
-            }
-            if (match(TokenType.SEPARATOR, "(")) {
-                consume(TokenType.SEPARATOR, "(");
-                if (!match(TokenType.SEPARATOR, ")")) {
-                    parseExpression();
-                    while (match(TokenType.SEPARATOR, ",")) {
-                        consume(TokenType.SEPARATOR, ",");
-                        parseExpression();
-                    }
-                }
-                consume(TokenType.SEPARATOR, ")");
-            }
-        } else if (match(TokenType.NUMBER) || match(TokenType.STRING)) {
-            consume(peek().type);
-        } else if (match(TokenType.KEYWORD, "true") || match(TokenType.KEYWORD, "false") || match(TokenType.KEYWORD, "null")) {
-            consume(TokenType.KEYWORD, peek().value);
-        } else if (match(TokenType.SEPARATOR, "(")) {
-            consume(TokenType.SEPARATOR, "(");
-            parseExpression();
-            consume(TokenType.SEPARATOR, ")");
-        } else {
-            throw new RuntimeException("Unexpected token in expression: " + peek());
-        }
+    private void push(int type, int token, int mark, int start) {
+        if (top + 4 > stack.length) stack = Arrays.copyOf(stack, stack.length * 2);
+        stack[top] = type;
+        stack[top + 1] = token;
+        stack[top + 2] = mark;
+        stack[top + 3] = start;
+        top += 4;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,664 @@
+package parser;
+
+import lexer.TokenChange;
+import model.TokenBuffer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Outcome of parsing a token stream, kept as a tree of statement nodes (blocks included) so that
+ * the next parse after an edit can reuse what the edit did not touch.
+ *
+ * A node records the token range of its statement and how far past it the parser looked. After
+ * an edit, reparse() runs the parser again from the start, but every statement list first checks
+ * whether an old node starts at the current position and neither its tokens nor its lookahead
+ * were relexed; if so the node, together with the siblings that follow it in the same list, is
+ * taken over without parsing. Only the statements containing the edit are parsed again, and
+ * inside them only the children that changed, so an edit costs about its depth in the tree plus
+ * the length of the statements it touches.
+ *
+ * Syntax errors are stored with the statement they were found in; statements with errors are
+ * always parsed again. A parse that is still recovering from an error when the input runs out
+ * keeps the old statements after the error that the edit did not touch, so fixing the error does
+ * not mean parsing the rest of the file again.
+ *
+ * Trees are immutable: a node's children are addressed by offsets held in the parent, so a
+ * reparse copies the nodes on the path to the edit and shares all others with the old tree. The
+ * children of a node are kept in shared chunks (see Children), so a long statement list, such as
+ * the top level of a large file, is not copied either: the path costs a few chunks per node.
+ *
+ * The tree is also an index of identifiers. Each statement keeps the names it declares (variables,
+ * functions, parameters) and uses (operands, assignment targets), grouped by interned name with
+ * the token offsets of each; statements nested in it keep their own. A node also carries a 64-bit
+ * mask of the names anywhere below it, so a lookup only descends into statements that may contain
+ * the name. Like the errors, the index of a statement is only rebuilt when it is parsed again.
+ * The names are interned in a table of the document's own, which a tree hands on to the trees
+ * reparsed from it and which goes away with the last of them.
+ */
+public class SyntaxTree {
+    // Low bit of an entry in Node.symbolTokens
+    private static final int DECLARATION = 1;
+
+    private final TokenBuffer tokens;
+    private final Node root;
+    private final Names names;
+    // Statements parsed rather than reused by the parse that built this tree
+    final int parsedStatements;
+
+    private SyntaxTree(TokenBuffer tokens, Node root, Names names, int parsedStatements) {
+        this.tokens = tokens;
+        this.root = root;
+        this.names = names;
+        this.parsedStatements = parsedStatements;
+    }
+
+    public static SyntaxTree parse(TokenBuffer tokens) {
+        return build(tokens, new Builder(null, null, new Names()));
+    }
+
+    /**
+     * Tree of change.tokens, reusing the statements of this tree that the change left alone.
+     * change must be relative to the tokens this tree was parsed from.
+     */
+    public SyntaxTree reparse(TokenChange change) {
+        // A tree with no statements to reuse, such as an empty or released one, hands on no names
+        Names next = root.children.size() > 0 ? names : new Names();
+        return build(change.tokens, new Builder(change, root, next));
+    }
+
+    private static SyntaxTree build(TokenBuffer tokens, Builder builder) {
+        Parser parser = new Parser(tokens, builder);
+        parser.parseStatements();
+        Node root = builder.finish(!parser.inPanic(), parser.position());
+        return new SyntaxTree(tokens, root, builder.names, builder.parsed);
+    }
+
+    Node root() {
+        return root;
+    }
+
+    public TokenBuffer tokens() {
+        return tokens;
+    }
+
+    public boolean isValid() {
+        return root.errors == 0;
+    }
+
+    public int errorCount() {
+        return root.errors;
+    }
+
+    // Bytes held by the nodes and the name table, counting those shared with older trees
+    public long memoryBytes() {
+        return root.bytes + names.memoryBytes();
+    }
+
+    /**
+     * Message of the syntax error Parser.parseProgram() would throw for these tokens, or null.
+     */
+    public String error() {
+        if (root.errors == 0) return null;
+        Node node = root;
+        while (true) {
+            int child = node.children.firstWithErrors();
+            if (child == node.children.size()
+                    || node.messages.length > 0 && node.errorTokens[0] <= node.children.start(child)) {
+                return node.messages[0];
+            }
+            node = node.children.node(child);
+        }
+    }
+
+    /**
+     * All syntax errors, in order; the same as Parser.parseWithRecovery() returns.
+     */
+    public List<Diagnostic> diagnostics() {
+        List<Diagnostic> result = new ArrayList<>(root.errors);
+        // The nodes with errors from the root down to the one being walked
+        Walk[] path = {new Walk()};
+        path[0].reset(root, 0, 0, root.messages.length);
+        int depth = 1;
+        while (depth > 0) {
+            Walk walk = path[depth - 1];
+            Node node = walk.node;
+            Children children = node.children;
+            Node next = null;
+            int nextStart = Integer.MAX_VALUE;
+            while (next == null && walk.chunk < children.chunkCount()) {
+                Children.Chunk chunk = children.chunk(walk.chunk);
+                if (walk.index == chunk.size() || chunk.errors == 0) {
+                    walk.chunk++;
+                    walk.index = 0;
+                } else if (chunk.nodes[walk.index].errors > 0) {
+                    next = chunk.nodes[walk.index];
+                    nextStart = walk.at + chunk.starts[walk.index] + children.shift(walk.chunk);
+                    walk.index++;
+                } else {
+                    walk.index++;
+                }
+            }
+            for (; walk.own < walk.ownEnd && walk.at + node.errorTokens[walk.own] <= nextStart; walk.own++) {
+                result.add(Diagnostic.at(tokens, walk.at + node.errorTokens[walk.own], node.messages[walk.own]));
+            }
+            if (next == null) {
+                depth--;
+                continue;
+            }
+            if (depth == path.length) path = Arrays.copyOf(path, depth * 2);
+            if (path[depth] == null) path[depth] = new Walk();
+            path[depth++].reset(next, nextStart, 0, next.messages.length);
+        }
+        return result;
+    }
+
+    /**
+     * Token indices of the declarations and uses of name, in order.
+     */
+    public int[] occurrences(String name) {
+        return find(name, false);
+    }
+
+    /**
+     * Token indices of the declarations of name, in order.
+     */
+    public int[] declarations(String name) {
+        return find(name, true);
+    }
+
+    /**
+     * Token index of the declaration the identifier at token refers to, or -1: the last one of
+     * its name before it, else the first one after it (a function called above its declaration).
+     * Names are matched as written; scopes are not taken into account.
+     */
+    public int declarationOf(int token) {
+        int[] found = declarations(tokens.text(token).toString());
+        if (found.length == 0) return -1;
+        int index = Arrays.binarySearch(found, token);
+        if (index >= 0) return token;
+        int before = -index - 2;
+        return before >= 0 ? found[before] : found[0];
+    }
+
+    // Adds the occurrences under each node in order: its own ones interleaved with its children's,
+    // as no token of its own lies inside a child
+    private int[] find(String name, boolean declarationsOnly) {
+        int id = names.id(name);
+        if (id < 0) return new int[0];
+        long bit = bit(id);
+        if (((declarationsOnly ? root.declared : root.names) & bit) == 0) return new int[0];
+        Occurrences result = new Occurrences();
+        // The nodes holding the name from the root down to the one being walked
+        Walk[] path = {new Walk()};
+        path[0].reset(root, 0, id);
+        int depth = 1;
+        while (depth > 0) {
+            Walk walk = path[depth - 1];
+            Node node = walk.node;
+            Children children = node.children;
+            Node next = null;
+            int nextStart = Integer.MAX_VALUE;
+            while (next == null && walk.chunk < children.chunkCount()) {
+                Children.Chunk chunk = children.chunk(walk.chunk);
+                if (walk.index == chunk.size() || ((declarationsOnly ? chunk.declared : chunk.names) & bit) == 0) {
+                    walk.chunk++;
+                    walk.index = 0;
+                    continue;
+                }
+                Node child = chunk.nodes[walk.index];
+                if (((declarationsOnly ? child.declared : child.names) & bit) != 0) {
+                    next = child;
+                    nextStart = chunk.starts[walk.index] + children.shift(walk.chunk);
+                }
+                walk.index++;
+            }
+            for (; walk.own < walk.ownEnd && node.symbolTokens[walk.own] >> 1 < nextStart; walk.own++) {
+                add(node.symbolTokens[walk.own], walk.at, declarationsOnly, result);
+            }
+            if (next == null) {
+                depth--;
+                continue;
+            }
+            if (depth == path.length) path = Arrays.copyOf(path, depth * 2);
+            if (path[depth] == null) path[depth] = new Walk();
+            path[depth++].reset(next, walk.at + nextStart, id);
+        }
+        return Arrays.copyOf(result.tokens, result.size);
+    }
+
+    private static void add(int symbol, int at, boolean declarationsOnly, Occurrences result) {
+        if (!declarationsOnly || (symbol & DECLARATION) != 0) result.add(at + (symbol >> 1));
+    }
+
+    private static long bit(int id) {
+        return 1L << (id & 63);
+    }
+
+    /**
+     * A node being walked without recursion, so that statements nested however deeply can be: the
+     * next child to look at and the range of its own errors or identifiers still to add.
+     */
+    private static final class Walk {
+        Node node;
+        int at;
+        int chunk;
+        int index;
+        int own;
+        int ownEnd;
+
+        void reset(Node node, int at, int own, int ownEnd) {
+            this.node = node;
+            this.at = at;
+            this.chunk = 0;
+            this.index = 0;
+            this.own = own;
+            this.ownEnd = ownEnd;
+        }
+
+        // Walks the identifiers named id
+        void reset(Node node, int at, int id) {
+            int group = Arrays.binarySearch(node.symbolIds, id);
+            reset(node, at, group >= 0 ? node.symbolStarts[group] : 0, group >= 0 ? node.symbolStarts[group + 1] : 0);
+        }
+    }
+
+    /**
+     * A statement: its length and lookahead in tokens counted from its first token, and the
+     * statements nested in it, in order, with their offsets from that same token and whether
+     * each comes right after the one before in the same statement list. Errors
+     * found in the statement itself rather than in a nested one are kept with the offsets of
+     * the tokens they were found at, and so are its identifiers: the occurrences of the name
+     * symbolIds[g] are symbolTokens[symbolStarts[g]] up to symbolTokens[symbolStarts[g + 1]],
+     * each an offset shifted left by one with DECLARATION in the low bit.
+     */
+    static final class Node {
+        private static final int[] NO_INTS = new int[0];
+        private static final int[] ZERO = new int[1];
+
+        final int length;
+        // Offset of the furthest token the parser looked at; the end of input counts as a token
+        final int lookahead;
+        // Recovered from any error before the input ran out; statements that did not are kept,
+        // but never reused
+        final boolean complete;
+        final Children children;
+        final String[] messages;
+        final int[] errorTokens;
+        // Errors in this statement and the nested ones
+        final int errors;
+        // Sorted interned name ids
+        final int[] symbolIds;
+        final int[] symbolStarts;
+        final int[] symbolTokens;
+        // Bit id % 64 of every name in this statement and the nested ones, and of those declared
+        final long names;
+        final long declared;
+        // Memory of this node and the nested ones: the object, its arrays and the array headers
+        final long bytes;
+
+        Node(int length, int lookahead, boolean complete, Children children, String[] messages,
+             int[] errorTokens) {
+            this(length, lookahead, complete, children, messages, errorTokens, NO_INTS, ZERO, NO_INTS);
+        }
+
+        Node(int length, int lookahead, boolean complete, Children children, String[] messages,
+             int[] errorTokens, int[] symbolIds, int[] symbolStarts, int[] symbolTokens) {
+            this.length = length;
+            this.lookahead = lookahead;
+            this.complete = complete;
+            this.children = children;
+            this.messages = messages;
+            this.errorTokens = errorTokens;
+            int errors = messages.length;
+            this.symbolIds = symbolIds;
+            this.symbolStarts = symbolStarts;
+            this.symbolTokens = symbolTokens;
+            long names = 0;
+            long declared = 0;
+            long bytes = 72 + 5 * 16 + 8L * messages.length
+                    + 4L * (symbolIds.length + symbolStarts.length + symbolTokens.length) + children.bytes();
+            for (int p = 0; p < children.chunkCount(); p++) {
+                Children.Chunk chunk = children.chunk(p);
+                errors += chunk.errors;
+                names |= chunk.names;
+                declared |= chunk.declared;
+                bytes += chunk.bytes;
+            }
+            for (int group = 0; group < symbolIds.length; group++) {
+                names |= bit(symbolIds[group]);
+                for (int i = symbolStarts[group]; i < symbolStarts[group + 1]; i++) {
+                    if ((symbolTokens[i] & DECLARATION) != 0) declared |= bit(symbolIds[group]);
+                }
+            }
+            this.errors = errors;
+            this.names = names;
+            this.declared = declared;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * Ids of the identifier names seen by the parses of one document, shared by a tree and the
+     * trees reparsed from it so that an id means the same name in all trees that share nodes.
+     * Parses intern the names of their tokens without building strings for names seen before.
+     * Lookups on the EDT may run while a reparse on the executor interns names, hence the locking.
+     */
+    private static final class Names {
+        private String[] names = new String[16];
+        // Open addressing by hash; id + 1, or 0 for a free slot
+        private int[] slots = new int[32];
+        private int count;
+        // Memory of the name strings, each about its header and its Latin-1 text
+        private long stringBytes;
+
+        synchronized int intern(TokenBuffer tokens, int index) {
+            CharSequence source = tokens.source();
+            int hash = 0;
+            for (int i = tokens.start(index); i < tokens.end(index); i++) {
+                hash = 31 * hash + source.charAt(i);
+            }
+            int slot = slot(hash);
+            for (; slots[slot] != 0; slot = (slot + 1) & (slots.length - 1)) {
+                if (tokens.textEquals(index, names[slots[slot] - 1])) return slots[slot] - 1;
+            }
+            if (count == names.length) names = Arrays.copyOf(names, count * 2);
+            names[count] = tokens.text(index).toString();
+            stringBytes += 24 + 16 + names[count].length();
+            slots[slot] = ++count;
+            if (2 * count > slots.length) rehash();
+            return count - 1;
+        }
+
+        // Id of name, or -1 if no parse has seen it
+        synchronized int id(String name) {
+            for (int slot = slot(name.hashCode()); slots[slot] != 0; slot = (slot + 1) & (slots.length - 1)) {
+                if (names[slots[slot] - 1].equals(name)) return slots[slot] - 1;
+            }
+            return -1;
+        }
+
+        // Same hash as String.hashCode(), spread over the table
+        private int slot(int hash) {
+            return (hash ^ hash >>> 16) & (slots.length - 1);
+        }
+
+        private void rehash() {
+            slots = new int[slots.length * 2];
+            for (int id = 0; id < count; id++) {
+                int slot = slot(names[id].hashCode());
+                while (slots[slot] != 0) slot = (slot + 1) & (slots.length - 1);
+                slots[slot] = id + 1;
+            }
+        }
+
+        synchronized long memoryBytes() {
+            return 40 + 16 + 4L * names.length + 16 + 4L * slots.length + stringBytes;
+        }
+    }
+
+    // Token indices found by a lookup
+    private static final class Occurrences {
+        int[] tokens = new int[16];
+        int size;
+
+        void add(int token) {
+            if (size == tokens.length) tokens = Arrays.copyOf(tokens, size * 2);
+            tokens[size++] = token;
+        }
+    }
+
+    /**
+     * Records the statements Parser parses as nodes and finds the old ones it can reuse.
+     * Positions passed in are token indices of the new stream.
+     */
+    static final class Builder {
+        private final TokenChange change;
+        private final Names names;
+        private Frame top;
+        int parsed;
+
+        // Identifiers of the open statements, those of each nested one after its parent's: name
+        // id in the high half, offset and DECLARATION bit in the low half
+        private long[] symbols = new long[64];
+        private int symbolCount;
+
+        // Set by reuse(): position after the reused statements and the furthest one looked at
+        int reusedEnd;
+        int reusedLookahead;
+
+        Builder(TokenChange change, Node oldRoot, Names names) {
+            this.change = change;
+            this.names = names;
+            this.top = new Frame(null, 0, 0, oldRoot, 0);
+        }
+
+        /**
+         * Takes over the old statement starting at start, and the ones after it in the same list,
+         * if the edit did not touch them. before is the parser's position ahead of any whitespace
+         * and comments preceding start.
+         */
+        boolean reuse(int before, int start) {
+            Frame frame = top;
+            int oldStart = find(frame, start);
+            if (oldStart < 0) return false;
+            Children old = frame.old.children;
+            int first = frame.cursor;
+            if (!usable(frame, first)) return false;
+
+            // Statements after the edit moved by another shift than those before it
+            int limit = oldStart < change.fromIndex
+                    ? old.indexAtOrAfter(change.fromIndex - frame.oldStart, first) : old.size();
+            int end = runEnd(frame, first, true, limit);
+            int shift = start - oldStart;
+            frame.children.addAll(old, first, end, frame.oldStart + shift - frame.start, frame.follows(before));
+            frame.cursor = end;
+            reusedEnd = frame.start + frame.children.end();
+            reusedLookahead = frame.oldStart + shift + old.reach(first, end);
+            return true;
+        }
+
+        /**
+         * Starts the node of a statement that is parsed; the old node at the same position, if
+         * any, is where its children are looked for.
+         */
+        void open(int before, int start) {
+            parsed++;
+            Frame frame = top;
+            int oldStart = find(frame, start);
+            Node old = oldStart >= 0 ? frame.old.children.node(frame.cursor) : null;
+            top = new Frame(frame, before, start, old, oldStart);
+            top.symbolBase = symbolCount;
+        }
+
+        void error(String message, int index) {
+            top.error(message, index);
+        }
+
+        void symbol(TokenBuffer tokens, int index, boolean declaration) {
+            if (symbolCount == symbols.length) symbols = Arrays.copyOf(symbols, symbolCount * 2);
+            long entry = (long) (index - top.start) << 1 | (declaration ? DECLARATION : 0);
+            symbols[symbolCount++] = (long) names.intern(tokens, index) << 32 | entry;
+        }
+
+        void close(int end, int furthest, boolean complete) {
+            Frame frame = top;
+            top = frame.parent;
+            if (!complete) carry(frame, end);
+            Node node = frame.node(end, furthest, complete, symbols, symbolCount);
+            symbolCount = frame.symbolBase;
+            top.add(frame.start, node, top.follows(frame.before));
+        }
+
+        Node finish(boolean complete, int end) {
+            if (!complete) carry(top, end);
+            return top.node(0, 0, complete, symbols, symbolCount);
+        }
+
+        /**
+         * A parse stopped by an error at end: keeps the old children after it that the edit did
+         * not touch, so that once the error is fixed they are reused instead of parsed again.
+         */
+        private void carry(Frame frame, int end) {
+            if (frame.old == null) return;
+            Children old = frame.old.children;
+            int shift = change.newToIndex - change.oldToIndex;
+            // The usable children starting at or after end once moved are all those from this
+            // old position on: the ones inside the relexed span are not usable
+            int from = end <= change.fromIndex ? end : Math.max(end - shift, change.fromIndex);
+            int edit = old.indexAtOrAfter(change.fromIndex - frame.oldStart, frame.cursor);
+            int previous = -1;
+            for (int i = old.indexAtOrAfter(from - frame.oldStart, frame.cursor); i < old.size(); ) {
+                if (!usable(frame, i)) {
+                    i++;
+                    continue;
+                }
+                // Children before the edit keep their position, those after it move
+                int runEnd = runEnd(frame, i, false, i < edit ? edit : old.size());
+                int delta = frame.oldStart + (i < edit ? 0 : shift) - frame.start;
+                // Still follows its sibling only if that one was carried along with it
+                frame.children.addAll(old, i, runEnd, delta, previous == i && old.follows(i));
+                previous = runEnd;
+                i = runEnd;
+            }
+        }
+
+        // Old position of the new token index, or -1 inside the relexed span
+        private int oldIndex(int index) {
+            if (index < change.fromIndex) return index;
+            if (index >= change.newToIndex) return index - change.newToIndex + change.oldToIndex;
+            return -1;
+        }
+
+        // Moves the frame's cursor to the old child starting where start was; returns its old
+        // position, or -1 if there is none
+        private int find(Frame frame, int start) {
+            if (frame.old == null) return -1;
+            int oldStart = oldIndex(start);
+            if (oldStart < 0) return -1;
+            Children old = frame.old.children;
+            frame.cursor = old.indexAtOrAfter(oldStart - frame.oldStart, frame.cursor);
+            if (frame.cursor == old.size() || frame.oldStart + old.start(frame.cursor) != oldStart) {
+                return -1;
+            }
+            return oldStart;
+        }
+
+        // Whether old child i parses the same now: no token it looked at relexed. Statements with
+        // errors are parsed again, as the messages quote token offsets.
+        private boolean usable(Frame frame, int i) {
+            Node node = frame.old.children.node(i);
+            int start = frame.oldStart + frame.old.children.start(i);
+            return node.complete && node.errors == 0
+                    && !(start < change.oldToIndex && start + node.lookahead >= change.fromIndex);
+        }
+
+        // End of the run of old children from usable child i up to limit that are usable too and,
+        // if chained, each follow the one before; passes over whole chunks where it can
+        private int runEnd(Frame frame, int i, boolean chained, int limit) {
+            Children old = frame.old.children;
+            int end = i + 1;
+            while (end < limit) {
+                int p = old.chunkOf(end);
+                Children.Chunk chunk = old.chunk(p);
+                int base = frame.oldStart + old.shift(p);
+                if (end == old.first(p) && end + chunk.size() <= limit && chunk.clean
+                        && (!chained || old.follows(end) && chunk.chained)
+                        && (base + chunk.starts[0] >= change.oldToIndex || base + chunk.reach < change.fromIndex)) {
+                    end += chunk.size();
+                } else if (usable(frame, end) && (!chained || old.follows(end))) {
+                    end++;
+                } else {
+                    break;
+                }
+            }
+            return end;
+        }
+    }
+
+    /**
+     * Node under construction, with the old node it replaces (or null) positioned at oldStart.
+     */
+    private static final class Frame {
+        private static final String[] NO_MESSAGES = new String[0];
+        private static final int[] NO_TOKENS = new int[0];
+
+        final Frame parent;
+        final int before;
+        final int start;
+        final Node old;
+        final int oldStart;
+        // First old child not passed yet
+        int cursor;
+
+        // Offsets from start
+        final Children.Builder children = new Children.Builder();
+
+        String[] messages = NO_MESSAGES;
+        int[] errorTokens = NO_TOKENS;
+        int errorCount;
+
+        // Where the statement's identifiers start in the builder's
+        int symbolBase;
+
+        Frame(Frame parent, int before, int start, Node old, int oldStart) {
+            this.parent = parent;
+            this.before = before;
+            this.start = start;
+            this.old = old;
+            this.oldStart = oldStart;
+        }
+
+        // A statement list moves on from one statement to the next passing only whitespace and
+        // comments, those from before on
+        boolean follows(int before) {
+            return children.size() > 0 && start + children.end() >= before;
+        }
+
+        void add(int childStart, Node child, boolean follow) {
+            children.add(childStart - start, child, follow);
+        }
+
+        void error(String message, int index) {
+            if (errorCount == messages.length) {
+                int capacity = Math.max(2, errorCount * 2);
+                messages = Arrays.copyOf(messages, capacity);
+                errorTokens = Arrays.copyOf(errorTokens, capacity);
+            }
+            messages[errorCount] = message;
+            errorTokens[errorCount] = index - start;
+            errorCount++;
+        }
+
+        // The node of the statement, whose identifiers are symbols[symbolBase] up to symbols[end]
+        Node node(int end, int furthest, boolean complete, long[] symbols, int symbolEnd) {
+            if (symbolEnd == symbolBase) {
+                return new Node(end - start, furthest - start, complete, children.build(),
+                        Arrays.copyOf(messages, errorCount), Arrays.copyOf(errorTokens, errorCount));
+            }
+            // Grouped by name; offsets are never negative, so each group stays in token order
+            Arrays.sort(symbols, symbolBase, symbolEnd);
+            int groups = 0;
+            for (int i = symbolBase; i < symbolEnd; i++) {
+                if (i == symbolBase || symbols[i] >>> 32 != symbols[i - 1] >>> 32) groups++;
+            }
+            int[] ids = new int[groups];
+            int[] groupStarts = new int[groups + 1];
+            int[] offsets = new int[symbolEnd - symbolBase];
+            int group = -1;
+            for (int i = 0; i < offsets.length; i++) {
+                long symbol = symbols[symbolBase + i];
+                if (group < 0 || ids[group] != (int) (symbol >>> 32)) {
+                    ids[++group] = (int) (symbol >>> 32);
+                    groupStarts[group] = i;
+                }
+                offsets[i] = (int) symbol;
+            }
+            groupStarts[groups] = offsets.length;
+            return new Node(end - start, furthest - start, complete, children.build(),
+                    Arrays.copyOf(messages, errorCount), Arrays.copyOf(errorTokens, errorCount),
+                    ids, groupStarts, offsets);
+        }
+    }
+}
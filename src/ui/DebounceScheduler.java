@@ -0,0 +1,113 @@
+package ui;
+
+import javax.swing.*;
+import java.util.Arrays;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Decides when a highlighting pass starts: a given time after the last edit, with at most one
+ * pass running at a time.
+ *
+ * The delay follows what passes have recently cost. Each finished pass reports its lex, parse and
+ * style time, kept in nanoseconds per document character for the last few passes; the delay after
+ * an edit is a few times the cost their median predicts for the current document length, clamped
+ * between the minimum and maximum delay. The median keeps a single slow pass, such as the first
+ * one after opening a file, from holding up the edits after it. So edits in a small file are
+ * coloured almost at once, while in a large one typing goes on without waiting for passes and a
+ * burst of edits is covered by one pass.
+ *
+ * A pass due while another is still running (or being cancelled by a newer edit) starts as soon
+ * as that one finishes, so passes never overlap or queue up behind each other. All methods are
+ * called on the EDT.
+ */
+class DebounceScheduler {
+    // Delay as a multiple of the predicted pass cost: passes take at most about a third of the time
+    private static final double COST_FACTOR = 2;
+    // Passes the prediction is taken from
+    private static final int HISTORY = 8;
+
+    private final int minDelay;
+    private final int maxDelay;
+    private final Timer timer;
+    private BooleanSupplier pass;
+
+    private final double[] nanosPerChar = new double[HISTORY];
+    private int passes;
+    private double predicted;
+    private boolean running;
+    private boolean due;
+
+    DebounceScheduler(int minDelay, int maxDelay) {
+        this.minDelay = minDelay;
+        this.maxDelay = maxDelay;
+        this.timer = new Timer(minDelay, e -> fire());
+        this.timer.setRepeats(false);
+    }
+
+    /**
+     * Sets what to run when a pass is due; it returns whether it started a pass, which must then
+     * be reported to finished().
+     */
+    void attach(BooleanSupplier pass) {
+        if (this.pass != null) throw new IllegalStateException("Already attached");
+        this.pass = pass;
+    }
+
+    /**
+     * Restarts the wait after an edit.
+     */
+    void edited(int documentLength) {
+        timer.setInitialDelay(delay(documentLength));
+        timer.restart();
+    }
+
+    /**
+     * Whether a pass has started and not been reported finished yet.
+     */
+    boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Starts a pass without waiting, or right after the one running.
+     */
+    void now() {
+        timer.stop();
+        fire();
+    }
+
+    /**
+     * Reports the end of a pass; costNanos is negative for one that was cancelled or discarded,
+     * whose time says nothing about the next.
+     */
+    void finished(int documentLength, long costNanos) {
+        running = false;
+        if (costNanos >= 0 && documentLength > 0) {
+            nanosPerChar[passes++ % HISTORY] = (double) costNanos / documentLength;
+            double[] recent = Arrays.copyOf(nanosPerChar, Math.min(passes, HISTORY));
+            Arrays.sort(recent);
+            // The lower median, so that of two passes the faster one counts
+            predicted = recent[(recent.length - 1) / 2];
+        }
+        if (due) {
+            due = false;
+            fire();
+        }
+    }
+
+    /**
+     * Milliseconds an edit to a document of this length waits before its pass.
+     */
+    int delay(int documentLength) {
+        double millis = COST_FACTOR * predicted * documentLength / 1e6;
+        return (int) Math.max(minDelay, Math.min(maxDelay, millis));
+    }
+
+    private void fire() {
+        if (running) {
+            due = true;
+        } else {
+            running = pass.getAsBoolean();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package ui;
+
+/**
+ * Folds the insert/remove events between two passes into a single edit.
+ * start/end are positions in the current text; delta is the total change in length.
+ */
+class DirtyRange {
+    int start = -1;
+    int end;
+    int delta;
+
+    boolean isEmpty() { return start < 0; }
+
+    int insertedLength() { return end - start; }
+
+    int removedLength() { return end - delta - start; }
+
+    void insert(int offset, int length) {
+        if (isEmpty()) {
+            start = offset;
+            end = offset + length;
+        } else {
+            if (offset <= end) end += length;
+            start = Math.min(start, offset);
+            end = Math.max(end, offset + length);
+        }
+        delta += length;
+    }
+
+    void remove(int offset, int length) {
+        if (isEmpty()) {
+            start = offset;
+            end = offset;
+        } else {
+            if (end >= offset + length) end -= length;
+            else if (end > offset) end = offset;
+            start = Math.min(start, offset);
+            end = Math.max(end, offset);
+        }
+        delta -= length;
+    }
+
+    void clear() {
+        start = -1;
+        end = 0;
+        delta = 0;
+    }
+}
@@ -0,0 +1,82 @@
+package ui;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder events of the highlighting passes, in the "Editor" category. Like the JDK's own
+ * events they cost next to nothing unless a recording is running, e.g. one started with
+ * -XX:StartFlightRecording:filename=editor.jfr.
+ */
+final class EditorEvents {
+    private EditorEvents() {
+    }
+
+    @Category("Editor")
+    abstract static class PassEvent extends Event {
+        @Label("Document Length")
+        @Description("Characters in the document")
+        int documentLength;
+
+        @Label("Token Count")
+        int tokenCount;
+
+        // Sets the event's own count
+        abstract void detail(int value);
+    }
+
+    @Name("editor.Lex")
+    @Label("Lex")
+    @Description("Relexing the edited part of the document")
+    static final class Lex extends PassEvent {
+        @Label("Relexed Tokens")
+        int relexedTokens;
+
+        @Override
+        void detail(int value) {
+            relexedTokens = value;
+        }
+    }
+
+    @Name("editor.Parse")
+    @Label("Parse")
+    @Description("Reparsing the statements an edit touched")
+    static final class Parse extends PassEvent {
+        @Label("Syntax Errors")
+        int errors;
+
+        @Override
+        void detail(int value) {
+            errors = value;
+        }
+    }
+
+    @Name("editor.Highlight")
+    @Label("Highlight")
+    @Description("Applying the changed styles to the visible lines")
+    static final class Highlight extends PassEvent {
+        @Label("Changed Runs")
+        int changedRuns;
+
+        @Override
+        void detail(int value) {
+            changedRuns = value;
+        }
+    }
+
+    @Name("editor.Keystroke")
+    @Label("Keystroke to Highlight")
+    @Description("From the first edit not highlighted yet until its pass is committed")
+    static final class Keystroke extends PassEvent {
+        @Label("Edits")
+        int edits;
+
+        @Override
+        void detail(int value) {
+            edits = value;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package ui;
+
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.*;
+import java.awt.*;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+
+import lexer.Lexer;
+import model.TokenBuffer;
+import model.TokenType;
+import parser.Diagnostic;
+import parser.SyntaxTree;
+
+/**
+ * One open document: a text pane with line numbers in a scroll pane, and the lexer, syntax
+ * checker and highlighter that keep it coloured and checked. The tabs of a window share its
+ * background executor and Latency.
+ *
+ * The tokens and syntax tree kept for incremental passes are the tab's caches. They count against
+ * the window's memory budget, and an inactive tab may be asked to drop them; activated() then
+ * rebuilds them with one full pass, which relexes and reparses but only restyles what differs.
+ *
+ * The syntax tree also indexes the identifiers, which the tab uses to find usages and go to
+ * declarations without lexing anything again.
+ */
+class EditorTab {
+    // Usages beyond these are counted but not highlighted
+    private static final int MAX_USAGE_HIGHLIGHTS = 5000;
+    private static final Highlighter.HighlightPainter USAGE_PAINTER =
+            new DefaultHighlighter.DefaultHighlightPainter(new Color(255, 235, 150));
+
+    final PieceTableContent content = new PieceTableContent();
+    final JEditorPane textPane;
+    final JScrollPane scrollPane;
+    final Lexer lexer = new Lexer();
+    final ErrorUnderliner errorUnderliner;
+    private final SyntaxChecker checker;
+    private final HighlightPasses<?> passes;
+    // The same as passes when styling the document, null in paint mode
+    private final HighlightEngine engine;
+
+    // Where the text was loaded from or saved to, or null
+    File file;
+    // Load in progress and how far it got
+    FileLoader loader;
+    int loadPercent;
+    List<Diagnostic> errors = List.of();
+    // When the tab was last shown, for evicting the caches of the least recently used
+    long lastActive = System.nanoTime();
+    // Highlights of the usages last found; dropped on the next edit
+    private final List<Object> usageTags = new ArrayList<>();
+
+    /**
+     * @param onChecked called on the EDT whenever a new syntax tree is committed
+     */
+    EditorTab(boolean paintMode, Map<TokenType, Color> colors, ExecutorService executor, Latency latency,
+              int minDelay, int maxDelay, Consumer<EditorTab> onChecked) {
+        textPane = paintMode
+                ? new JEditorPane() {
+                    @Override
+                    protected void paintComponent(Graphics g) {
+                        long start = System.nanoTime();
+                        super.paintComponent(g);
+                        latency.record(Latency.Phase.PAINT, System.nanoTime() - start);
+                    }
+                }
+                : new JTextPane(new DefaultStyledDocument(content, new StyleContext())) {
+                    @Override
+                    protected void paintComponent(Graphics g) {
+                        long start = System.nanoTime();
+                        super.paintComponent(g);
+                        latency.record(Latency.Phase.PAINT, System.nanoTime() - start);
+                    }
+                };
+
+        errorUnderliner = new ErrorUnderliner(textPane);
+        checker = new SyntaxChecker(tree -> {
+            errors = tree.diagnostics();
+            errorUnderliner.show(errors);
+            onChecked.accept(this);
+        });
+
+        DebounceScheduler scheduler = new DebounceScheduler(minDelay, maxDelay);
+        if (paintMode) {
+            engine = null;
+            PaintHighlighter painter = new PaintHighlighter(textPane, content::snapshot, lexer, executor, checker,
+                    latency, scheduler);
+            passes = painter;
+            textPane.setEditorKit(new TokenEditorKit(painter, colors));
+            textPane.setDocument(new PlainDocument(content));
+        } else {
+            StyledDocument doc = ((JTextPane) textPane).getStyledDocument();
+            Map<TokenType, Style> styles = new HashMap<>();
+            for (Map.Entry<TokenType, Color> entry : colors.entrySet()) {
+                Style style = doc.addStyle(entry.getKey().name(), null);
+                StyleConstants.setForeground(style, entry.getValue());
+                styles.put(entry.getKey(), style);
+            }
+            engine = new HighlightEngine((JTextPane) textPane, content::snapshot, styles, lexer, executor,
+                    checker, latency, scheduler);
+            passes = engine;
+        }
+        textPane.getDocument().addDocumentListener(passes);
+        textPane.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 14));
+        textPane.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                clearUsages();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                clearUsages();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) { }
+        });
+
+        scrollPane = new JScrollPane(textPane);
+        scrollPane.setRowHeaderView(new LineNumberPanel(textPane));
+        // Scrolling colours the newly visible lines first; error underlines follow the visible part
+        if (engine != null) scrollPane.getViewport().addChangeListener(e -> engine.viewportChanged());
+        scrollPane.getViewport().addChangeListener(e -> errorUnderliner.viewportChanged());
+    }
+
+    String title() {
+        return file != null ? file.getName() : "Adsız";
+    }
+
+    /**
+     * The highlighter working on the document's styles, or null in paint mode.
+     */
+    HighlightEngine engine() {
+        return engine;
+    }
+
+    /**
+     * Called when the tab is shown.
+     */
+    void activated() {
+        lastActive = System.nanoTime();
+        passes.rebuild();
+    }
+
+    /**
+     * Drops the tokens and syntax tree unless a load or pass is under way; returns whether it did.
+     */
+    boolean evictCaches() {
+        if (loader != null) return false;
+        return passes.evictCaches();
+    }
+
+    /**
+     * Runs action on the EDT with the syntax tree once it covers the text as it is now; never if
+     * the text is edited before that. Its token offsets are then document offsets.
+     */
+    void whenChecked(Consumer<SyntaxTree> action) {
+        passes.whenCommitted(tokens -> action.accept(checker.tree()));
+    }
+
+    /**
+     * Index of the identifier at offset or ending right at it, or -1.
+     */
+    static int identifierAt(TokenBuffer tokens, int offset) {
+        int index = tokens.firstEndingAfter(offset);
+        if (index < tokens.size() && tokens.start(index) <= offset && tokens.type(index) == TokenType.IDENTIFIER) {
+            return index;
+        }
+        if (index > 0 && tokens.end(index - 1) == offset && tokens.type(index - 1) == TokenType.IDENTIFIER) {
+            return index - 1;
+        }
+        return -1;
+    }
+
+    /**
+     * Highlights the given tokens in place of the usages shown before.
+     */
+    void showUsages(TokenBuffer tokens, int[] found) {
+        clearUsages();
+        Highlighter highlighter = textPane.getHighlighter();
+        for (int i = 0; i < Math.min(found.length, MAX_USAGE_HIGHLIGHTS); i++) {
+            try {
+                usageTags.add(highlighter.addHighlight(tokens.start(found[i]), tokens.end(found[i]), USAGE_PAINTER));
+            } catch (BadLocationException ex) {
+                // Outside the text; the tokens are of an older one
+            }
+        }
+    }
+
+    private void clearUsages() {
+        if (usageTags.isEmpty()) return;
+        Highlighter highlighter = textPane.getHighlighter();
+        for (Object tag : usageTags) {
+            highlighter.removeHighlight(tag);
+        }
+        usageTags.clear();
+    }
+
+    long tokenBytes() {
+        return lexer.getTokens().memoryBytes();
+    }
+
+    long treeBytes() {
+        return checker.tree().memoryBytes();
+    }
+
+    // Style runs mirror the document's attributes and are kept when the caches are evicted
+    long styleBytes() {
+        return engine != null ? engine.runsMemoryBytes() : 0;
+    }
+
+    long cacheBytes() {
+        return tokenBytes() + treeBytes();
+    }
+}
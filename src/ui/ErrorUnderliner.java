@@ -0,0 +1,132 @@
+package ui;
+
+import javax.swing.text.*;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+
+import parser.Diagnostic;
+
+/**
+ * Underlines syntax errors with a zigzag line. Only the diagnostics in and around the visible part
+ * of the document get a highlight, so a file with thousands of errors costs no more than the ones
+ * on screen; the highlights are redone when new diagnostics arrive or the pane scrolls.
+ */
+class ErrorUnderliner {
+    private final JTextComponent textComponent;
+    private final Highlighter.HighlightPainter painter = new SquigglePainter(Color.RED);
+
+    // Sorted by position, in the coordinates of the text they were found in
+    private List<Diagnostic> diagnostics = List.of();
+    private final List<Object> tags = new ArrayList<>();
+    // Range of diagnostics that currently have a highlight
+    private int shownFrom;
+    private int shownTo;
+
+    ErrorUnderliner(JTextComponent textComponent) {
+        this.textComponent = textComponent;
+    }
+
+    void show(List<Diagnostic> diagnostics) {
+        this.diagnostics = diagnostics;
+        clear();
+        refresh();
+    }
+
+    /**
+     * Called when the pane is scrolled or resized.
+     */
+    void viewportChanged() {
+        refresh();
+    }
+
+    private void clear() {
+        Highlighter highlighter = textComponent.getHighlighter();
+        for (Object tag : tags) {
+            highlighter.removeHighlight(tag);
+        }
+        tags.clear();
+        shownFrom = shownTo = 0;
+    }
+
+    private void refresh() {
+        Rectangle rect = textComponent.getVisibleRect();
+        int from = 0;
+        int to = 0;
+        if (!rect.isEmpty() && !diagnostics.isEmpty()) {
+            // One screen of margin above and below, as for highlighting
+            int top = textComponent.viewToModel2D(new Point(rect.x, Math.max(0, rect.y - rect.height)));
+            int bottom = textComponent.viewToModel2D(new Point(rect.x + rect.width, rect.y + 2 * rect.height));
+            from = firstEndingAfter(top);
+            to = from;
+            while (to < diagnostics.size() && diagnostics.get(to).start <= bottom) to++;
+        }
+        if (from == shownFrom && to == shownTo) return;
+
+        clear();
+        Highlighter highlighter = textComponent.getHighlighter();
+        int length = textComponent.getDocument().getLength();
+        for (int i = from; i < to; i++) {
+            Diagnostic diagnostic = diagnostics.get(i);
+            // Errors at the end of input have no characters; underline the last one
+            int start = Math.min(diagnostic.start, length);
+            int end = Math.min(Math.max(diagnostic.end, start + 1), length);
+            if (start == end && start > 0) start--;
+            if (start == end) continue;
+            try {
+                tags.add(highlighter.addHighlight(start, end, painter));
+            } catch (BadLocationException ex) {
+                // Outside the text; the next diagnostics will replace it
+            }
+        }
+        shownFrom = from;
+        shownTo = to;
+    }
+
+    private int firstEndingAfter(int offset) {
+        int low = 0;
+        int high = diagnostics.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (diagnostics.get(mid).end < offset) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * Draws a zigzag along the bottom of the highlighted text.
+     */
+    private static class SquigglePainter extends LayeredHighlighter.LayerPainter {
+        private final Color color;
+
+        SquigglePainter(Color color) {
+            this.color = color;
+        }
+
+        // Only the layered variant is used by DefaultHighlighter
+        @Override
+        public void paint(Graphics g, int p0, int p1, Shape bounds, JTextComponent c) { }
+
+        @Override
+        public Shape paintLayer(Graphics g, int offs0, int offs1, Shape bounds, JTextComponent c, View view) {
+            Rectangle r;
+            if (offs0 == view.getStartOffset() && offs1 == view.getEndOffset()) {
+                r = bounds.getBounds();
+            } else {
+                try {
+                    r = view.modelToView(offs0, Position.Bias.Forward, offs1, Position.Bias.Backward, bounds).getBounds();
+                } catch (BadLocationException ex) {
+                    return null;
+                }
+            }
+            g.setColor(color);
+            int y = r.y + r.height - 3;
+            for (int x = r.x; x < r.x + r.width; x += 4) {
+                g.drawLine(x, y, x + 2, y + 2);
+                g.drawLine(x + 2, y + 2, x + 4, y);
+            }
+            return r;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package ui;
+
+import javax.swing.*;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * Loads a file into a document without reading it into the heap first. The file is memory-mapped
+ * window by window and decoded as UTF-8 on a background thread into a fixed-size char buffer;
+ * every full buffer is appended to the document on the EDT before decoding continues. So at most
+ * one chunk is in flight, the start of the file is on screen while the rest is still loading, and
+ * besides the document itself the load needs a chunk's worth of heap whatever the file size.
+ * The document is the bulk of it: the text at a byte per character if it is all Latin-1 (see
+ * PieceTableContent), and the line element and position Swing keeps for every line, about 110
+ * bytes each; for source code that comes to about three times the file size.
+ * A CRC32C of the bytes is computed on the way, for TokenCache to check its entry against.
+ */
+class FileLoader {
+    private static final int CHUNK_CHARS = 1 << 20;
+    // Bytes mapped at a time; a mapping cannot be larger than 2 GB anyway
+    private static final long WINDOW_BYTES = 64L << 20;
+
+    interface Listener {
+        // Both called on the EDT
+        void progress(int percent);
+
+        void finished(IOException error, boolean cancelled);
+    }
+
+    private final Path path;
+    private final Document document;
+    private Listener listener;
+    private volatile boolean cancelled;
+    private volatile long checksum = -1;
+
+    FileLoader(Path path, Document document) {
+        this.path = path;
+        this.document = document;
+    }
+
+    void start(Listener listener) {
+        this.listener = listener;
+        Thread.ofVirtual().name("file-loader").start(this::load);
+    }
+
+    /**
+     * Stops loading; once called on the EDT no further chunk reaches the document. What was
+     * loaded so far stays.
+     */
+    void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * CRC32C of the file's bytes once loaded without error, otherwise -1.
+     */
+    long checksum() {
+        return checksum;
+    }
+
+    private void load() {
+        IOException error = null;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            // Malformed bytes become U+FFFD, as with new String(bytes, UTF_8)
+            CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            CharBuffer chars = CharBuffer.allocate(CHUNK_CHARS);
+            CRC32C crc = new CRC32C();
+
+            long position = 0;
+            while (position < size && !cancelled) {
+                long length = Math.min(WINDOW_BYTES, size - position);
+                boolean endOfInput = position + length == size;
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+
+                // Stops short of a sequence cut by the window's end; the next window starts with it
+                while (!cancelled && decoder.decode(window, chars, endOfInput) == CoderResult.OVERFLOW) {
+                    append(chars);
+                    int percent = (int) ((position + window.position()) * 100 / size);
+                    SwingUtilities.invokeLater(() -> listener.progress(percent));
+                }
+                int consumed = window.position();
+                crc.update(window.flip());
+                position += consumed;
+            }
+            if (!cancelled) {
+                decoder.flush(chars);
+                append(chars);
+                checksum = crc.getValue();
+            }
+        } catch (IOException ex) {
+            error = ex;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            cancelled = true;
+        }
+
+        IOException failure = error;
+        boolean stopped = cancelled;
+        SwingUtilities.invokeLater(() -> listener.finished(failure, stopped));
+    }
+
+    // Appends the decoded chars on the EDT and waits for it, then empties the buffer
+    private void append(CharBuffer chars) throws InterruptedException {
+        chars.flip();
+        String chunk = chars.toString();
+        chars.clear();
+        if (chunk.isEmpty()) return;
+        try {
+            SwingUtilities.invokeAndWait(() -> {
+                if (cancelled) return;
+                try {
+                    document.insertString(document.getLength(), chunk, null);
+                } catch (BadLocationException ex) {
+                    throw new IllegalStateException(ex);
+                }
+            });
+        } catch (InvocationTargetException ex) {
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+}
@@ -0,0 +1,391 @@
+package ui;
+
+import javax.swing.*;
+import javax.swing.text.*;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
+
+import lexer.Lexer;
+import lexer.TokenChange;
+import model.TokenType;
+
+/**
+ * Highlighting that writes the colours into a text pane's styled document. Passes are run by
+ * HighlightPasses; each also diffs its tokens against the style runs last applied on the
+ * executor, and a committed pass applies only the runs that changed.
+ *
+ * Style changes are applied to what is on screen first: the visible lines (plus a screen of margin)
+ * right away, the rest in slices posted back to the event queue so typing and scrolling stay
+ * responsive. For a large edit such as opening a file, the visible part of the edit is lexed and
+ * coloured ahead of the full pass, so the first paint does not wait for the whole document.
+ *
+ * A file whose tokens are in the TokenCache is not lexed while it loads: passes wait (previews
+ * still colour the visible lines) and, once the loaded bytes are known to match the entry, one
+ * pass takes the stored tokens in place of lexing.
+ *
+ * After the caches are evicted the next pass lexes and parses the whole text, but still only
+ * restyles what differs from the styles applied before.
+ */
+class HighlightEngine extends HighlightPasses<StyleRuns.Diff> {
+    // Style runs applied per event when working through the part of the document that is off screen
+    private static final int SLICE_RUNS = 2000;
+    // Edits inserting at least this many characters get the visible range coloured before the full pass
+    private static final int PREVIEW_THRESHOLD = 64 * 1024;
+    // How far a preview looks back for the start of the first visible line
+    private static final int PREVIEW_LOOKBACK = 4096;
+
+    private final JTextPane textPane;
+    private final Map<TokenType, Style> styles;
+
+    // Runs last applied to the document; replaced, never modified, on commit
+    private volatile StyleRuns appliedRuns = new StyleRuns();
+
+    // Committed style changes not written to the document yet (EDT only)
+    private PendingRuns pending;
+    private boolean sliceScheduled;
+
+    // Large pass in flight, for previews of the visible range (EDT only)
+    private CharSequence passSnapshot;
+    private long passVersion = -1;
+    private int passStart;
+    private int passEnd;
+    private boolean previewRunning;
+    private boolean previewAgain;
+
+    // Cache entry of the file being loaded, and one loaded and checked for the pass of version
+    // cachedVersion (EDT only)
+    private TokenCache.Entry expected;
+    private TokenCache.Entry cached;
+    private long cachedVersion;
+
+    HighlightEngine(JTextPane textPane, Supplier<CharSequence> text, Map<TokenType, Style> styles,
+                    Lexer lexer, ExecutorService executor, SyntaxChecker checker, Latency latency,
+                    DebounceScheduler scheduler) {
+        super(textPane, text, lexer, executor, checker, latency, scheduler);
+        this.textPane = textPane;
+        this.styles = styles;
+    }
+
+    /**
+     * Holds back passes while a file with these cached tokens loads; see loaded().
+     */
+    void expectTokens(TokenCache.Entry entry) {
+        expected = entry;
+    }
+
+    /**
+     * Called once the file has loaded, with the CRC32C of its bytes or -1 if it did not load
+     * completely. Starts the pass held back by expectTokens(), which takes the cached tokens if
+     * the checksum matches; returns whether it does.
+     */
+    boolean loaded(long checksum) {
+        TokenCache.Entry entry = expected;
+        if (entry == null) return false;
+        expected = null;
+        boolean match = checksum != -1 && entry.checksum == checksum;
+        if (match) {
+            cached = entry;
+            cachedVersion = version;
+        }
+        scheduler.now();
+        return match;
+    }
+
+    /**
+     * As HighlightPasses.evictCaches(), but not while a load is under way either.
+     */
+    @Override
+    boolean evictCaches() {
+        return expected == null && super.evictCaches();
+    }
+
+    /**
+     * Bytes held by the runs last applied, which stay when the caches are evicted.
+     */
+    long runsMemoryBytes() {
+        return appliedRuns.memoryBytes();
+    }
+
+    /**
+     * Called when the pane is scrolled or resized: colours the newly visible lines first.
+     */
+    void viewportChanged() {
+        if (pending != null) scheduleSlice();
+        if (passSnapshot != null) startPreview();
+    }
+
+    @Override
+    void textEdited(int offset, int removed, int inserted) {
+        if (pending != null) pending.edited(offset, removed, inserted);
+        passSnapshot = null;
+    }
+
+    @Override
+    boolean passDue(CharSequence snapshot, long passVersion, int offset, int inserted) {
+        if (inserted >= PREVIEW_THRESHOLD) {
+            this.passSnapshot = snapshot;
+            this.passVersion = passVersion;
+            this.passStart = offset;
+            this.passEnd = offset + inserted;
+            startPreview();
+        }
+        // The file is still loading and its tokens will come from the cache
+        return expected == null;
+    }
+
+    @Override
+    TokenCache.Entry storedTokens(long passVersion) {
+        TokenCache.Entry entry = cachedVersion == passVersion ? cached : null;
+        cached = null;
+        return entry;
+    }
+
+    @Override
+    StyleRuns.Diff prepare(TokenChange change, int offset, int removed, int inserted) {
+        return appliedRuns.update(change, offset, removed, inserted);
+    }
+
+    @Override
+    long committed(TokenChange change, StyleRuns.Diff diff, int documentLength) {
+        appliedRuns = diff.runs;
+        passSnapshot = null;
+
+        Latency.Span styling = latency.begin(Latency.Phase.STYLE);
+        pending = pending == null ? new PendingRuns(diff.changed) : pending.merge(diff.changed);
+        applySlice();
+        return styling.end(documentLength, change.tokens.size(), diff.changed.size());
+    }
+
+    private void scheduleSlice() {
+        if (sliceScheduled) return;
+        sliceScheduled = true;
+        SwingUtilities.invokeLater(this::applySlice);
+    }
+
+    /**
+     * Applies the pending runs on screen, then the next SLICE_RUNS in document order, and
+     * reschedules itself until none are left.
+     */
+    private void applySlice() {
+        sliceScheduled = false;
+        if (pending == null) return;
+
+        int[] visible = visibleRange();
+        StyledDocument doc = textPane.getStyledDocument();
+        pending.apply(doc, styles, visible[0], visible[1], Integer.MAX_VALUE);
+        pending.apply(doc, styles, 0, Integer.MAX_VALUE, SLICE_RUNS);
+
+        if (pending.isEmpty()) {
+            pending = null;
+        } else {
+            scheduleSlice();
+        }
+    }
+
+    /**
+     * Lexes the visible part of the in-flight pass's edit on the executor and colours it, unless
+     * the pass commits or the text changes first. Lexing starts at the beginning of the first
+     * visible line, so a comment or string opened above it may be coloured wrong until the full
+     * pass corrects it. Only characters inside the edit are touched, which the full pass rewrites
+     * in any case.
+     */
+    private void startPreview() {
+        if (previewRunning) {
+            previewAgain = true;
+            return;
+        }
+        int[] visible = visibleRange();
+        int from = Math.max(visible[0], passStart);
+        int to = Math.min(visible[1], passEnd);
+        if (from >= to) return;
+
+        CharSequence snapshot = passSnapshot;
+        long previewVersion = passVersion;
+        previewRunning = true;
+        executor.execute(() -> {
+            int lineStart = from;
+            int limit = Math.max(0, from - PREVIEW_LOOKBACK);
+            while (lineStart > limit && snapshot.charAt(lineStart - 1) != '\n') {
+                lineStart--;
+            }
+            int base = lineStart;
+            StyleRuns runs = new StyleRuns();
+            lexer.tokenize(CharBuffer.wrap(snapshot, base, to), (type, kind, start, end) -> {
+                int runStart = Math.max(base + start, from);
+                int runEnd = Math.min(base + end, to);
+                if (runStart < runEnd) runs.add(runStart, runEnd, type.ordinal());
+            });
+            SwingUtilities.invokeLater(() -> {
+                previewRunning = false;
+                if (version == previewVersion && passSnapshot == snapshot) {
+                    StyledDocument doc = textPane.getStyledDocument();
+                    for (int i = 0; i < runs.size(); i++) {
+                        applyRun(doc, styles, runs.start(i), runs.end(i), runs.style(i));
+                    }
+                }
+                if (previewAgain) {
+                    previewAgain = false;
+                    if (passSnapshot != null) startPreview();
+                }
+            });
+        });
+    }
+
+    /**
+     * Document range shown in the viewport, widened by one screen above and below.
+     */
+    private int[] visibleRange() {
+        Rectangle rect = textPane.getVisibleRect();
+        if (rect.isEmpty()) return new int[] {0, 0};
+        int top = textPane.viewToModel2D(new Point(rect.x, Math.max(0, rect.y - rect.height)));
+        int bottom = textPane.viewToModel2D(new Point(rect.x + rect.width, rect.y + 2 * rect.height));
+        return new int[] {Math.max(0, top), Math.max(top, bottom)};
+    }
+
+    /**
+     * Writes runs into doc slice by slice in document order, as a committed pass does once the
+     * visible lines are done; the benchmarks style a document without a text pane this way.
+     */
+    static void applyAll(StyleRuns runs, StyledDocument doc, Map<TokenType, Style> styles) {
+        PendingRuns pending = new PendingRuns(runs);
+        while (!pending.isEmpty()) {
+            pending.apply(doc, styles, 0, Integer.MAX_VALUE, SLICE_RUNS);
+        }
+    }
+
+    private static void applyRun(StyledDocument doc, Map<TokenType, Style> styles, int start, int end, int style) {
+        Style defaultStyle = doc.getStyle(StyleContext.DEFAULT_STYLE);
+        TokenType type = TokenType.values()[style];
+        Style attributes = type == TokenType.WHITESPACE
+                ? defaultStyle
+                : styles.getOrDefault(type, defaultStyle);
+        int from = Math.max(0, Math.min(start, doc.getLength()));
+        int len = Math.max(0, Math.min(end, doc.getLength()) - from);
+        if (len > 0) {
+            doc.setCharacterAttributes(from, len, attributes, true);
+        }
+    }
+
+    /**
+     * Committed style runs still to be written to the document, in current document coordinates.
+     * Runs that an edit touches are dropped: the edit's own pass compares against them as if
+     * they were applied, but treats every run overlapping the edited characters as stale anyway.
+     */
+    private static class PendingRuns {
+        int[] starts;
+        int[] ends;
+        byte[] styles;
+        boolean[] done;
+        int size;
+        int remaining;
+        // Every run before this one is done
+        int cursor;
+
+        PendingRuns(StyleRuns runs) {
+            this(runs.size());
+            for (int i = 0; i < runs.size(); i++) {
+                put(runs.start(i), runs.end(i), runs.style(i));
+            }
+        }
+
+        private PendingRuns(int capacity) {
+            starts = new int[capacity];
+            ends = new int[capacity];
+            styles = new byte[capacity];
+            done = new boolean[capacity];
+        }
+
+        boolean isEmpty() { return remaining == 0; }
+
+        private void put(int start, int end, int style) {
+            starts[size] = start;
+            ends[size] = end;
+            styles[size] = (byte) style;
+            size++;
+            remaining++;
+        }
+
+        /**
+         * Applies up to limit runs overlapping [from, to), in document order.
+         */
+        void apply(StyledDocument doc, Map<TokenType, Style> attributes, int from, int to, int limit) {
+            int i = from == 0 ? cursor : firstEndingAfter(from);
+            for (; i < size && limit > 0 && starts[i] < to; i++) {
+                if (done[i]) continue;
+                applyRun(doc, attributes, starts[i], ends[i], styles[i]);
+                done[i] = true;
+                remaining--;
+                limit--;
+            }
+            while (cursor < size && done[cursor]) cursor++;
+        }
+
+        /**
+         * Moves the runs after an edit and drops the ones overlapping it.
+         */
+        void edited(int offset, int removed, int inserted) {
+            int delta = inserted - removed;
+            int kept = 0;
+            for (int i = cursor; i < size; i++) {
+                if (done[i]) continue;
+                int start = starts[i];
+                int end = ends[i];
+                boolean overlaps = removed > 0
+                        ? start < offset + removed && end > offset
+                        : start < offset && end > offset;
+                if (overlaps) continue;
+                if (start >= offset + removed) {
+                    start += delta;
+                    end += delta;
+                }
+                starts[kept] = start;
+                ends[kept] = end;
+                styles[kept] = styles[i];
+                done[kept] = false;
+                kept++;
+            }
+            Arrays.fill(done, kept, size, false);
+            size = kept;
+            remaining = kept;
+            cursor = 0;
+        }
+
+        /**
+         * Pending runs with newly committed ones added; a new run replaces the old ones it overlaps.
+         */
+        PendingRuns merge(StyleRuns runs) {
+            PendingRuns result = new PendingRuns(remaining + runs.size());
+            int i = cursor;
+            for (int j = 0; j < runs.size(); j++) {
+                while (i < size && (done[i] || ends[i] <= runs.start(j))) {
+                    if (!done[i]) result.put(starts[i], ends[i], styles[i]);
+                    i++;
+                }
+                while (i < size && starts[i] < runs.end(j)) {
+                    i++;
+                }
+                result.put(runs.start(j), runs.end(j), runs.style(j));
+            }
+            for (; i < size; i++) {
+                if (!done[i]) result.put(starts[i], ends[i], styles[i]);
+            }
+            return result;
+        }
+
+        private int firstEndingAfter(int offset) {
+            int low = cursor;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (ends[mid] <= offset) low = mid + 1;
+                else high = mid;
+            }
+            return low;
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package ui;
+
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.JTextComponent;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import lexer.Lexer;
+import lexer.TokenChange;
+import model.TokenBuffer;
+import parser.SyntaxTree;
+
+/**
+ * The pass lifecycle both highlighting modes share: keeps the lexer's tokens and the syntax tree
+ * in sync with a document without lexing on the Event Dispatch Thread.
+ *
+ * Every edit bumps a version number. When the DebounceScheduler starts a pass, an immutable
+ * snapshot of the text is taken and relexed on the executor together with the edits made since
+ * the last committed pass. The background pass gives up as soon as the version moves on; a
+ * finished pass is only committed if no edit happened in the meantime. The pass also reparses
+ * the edited statements for the syntax checker, committed along with the tokens.
+ *
+ * The tokens and syntax tree kept between passes can be dropped to save memory (evictCaches());
+ * the next pass then lexes and parses the whole text.
+ *
+ * What a mode does with a pass is up to it: prepare() runs on the executor once the tokens are
+ * lexed, and committed() on the EDT with what prepare() returned. The phases of every pass are
+ * timed into Latency.
+ *
+ * @param <P> what prepare() makes of a pass for committed()
+ */
+abstract class HighlightPasses<P> implements DocumentListener {
+    private final JTextComponent textComponent;
+    // Immutable view of the document's current text
+    private final Supplier<CharSequence> text;
+    final Lexer lexer;
+    final ExecutorService executor;
+    private final SyntaxChecker checker;
+    final Latency latency;
+    final DebounceScheduler scheduler;
+
+    // Edits since the last committed pass (EDT only)
+    final DirtyRange dirty = new DirtyRange();
+    volatile long version;
+    // Tokens and tree dropped; the next pass rebuilds them (EDT only)
+    private boolean evicted;
+
+    // Run with the tokens of the first pass that commits version committedVersion (EDT only)
+    private Consumer<TokenBuffer> committedAction;
+    private long committedVersion;
+
+    // Timing since the first edit no committed pass covers, and the edits since (EDT only)
+    private Latency.Span keystroke;
+    private int keystrokeEdits;
+    private long lastEdit;
+
+    HighlightPasses(JTextComponent textComponent, Supplier<CharSequence> text, Lexer lexer,
+                    ExecutorService executor, SyntaxChecker checker, Latency latency,
+                    DebounceScheduler scheduler) {
+        this.textComponent = textComponent;
+        this.text = text;
+        this.lexer = lexer;
+        this.executor = executor;
+        this.checker = checker;
+        this.latency = latency;
+        this.scheduler = scheduler;
+        scheduler.attach(this::startPass);
+    }
+
+    /**
+     * Called on the EDT for every edit, after the dirty range took it in.
+     */
+    void textEdited(int offset, int removed, int inserted) { }
+
+    /**
+     * Called on the EDT when a pass is due, with the range its edit inserted; returns false to
+     * hold the pass back until the scheduler is told to run one again.
+     */
+    boolean passDue(CharSequence snapshot, long passVersion, int offset, int inserted) {
+        return true;
+    }
+
+    /**
+     * Called on the EDT when a pass starts: stored tokens it may take in place of lexing, which
+     * are checked against the snapshot on the executor, or null.
+     */
+    TokenCache.Entry storedTokens(long passVersion) {
+        return null;
+    }
+
+    /**
+     * Called on the executor with the lexed tokens of a pass the version has not moved on from.
+     */
+    abstract P prepare(TokenChange change, int offset, int removed, int inserted);
+
+    /**
+     * Called on the EDT once the pass's tokens and tree are committed; returns the nanoseconds
+     * it took, counted as part of the pass.
+     */
+    abstract long committed(TokenChange change, P prepared, int documentLength);
+
+    /**
+     * Runs action on the EDT with the tokens of the text as it is now, once a pass has lexed them;
+     * never if the text is edited before that. Actions still waiting for the same text run too,
+     * in the order given; those waiting for an older text are dropped.
+     */
+    void whenCommitted(Consumer<TokenBuffer> action) {
+        if (dirty.isEmpty() && !evicted) {
+            committedAction = null;
+            action.accept(lexer.getTokens());
+        } else if (committedAction != null && committedVersion == version) {
+            committedAction = committedAction.andThen(action);
+        } else {
+            committedAction = action;
+            committedVersion = version;
+        }
+    }
+
+    /**
+     * Drops the committed tokens and syntax tree unless a pass is under way; returns whether it
+     * did. rebuild() or the next edit makes them again.
+     */
+    boolean evictCaches() {
+        if (evicted || scheduler.isRunning()) return false;
+        lexer.reset("");
+        checker.release();
+        evicted = true;
+        return true;
+    }
+
+    void rebuild() {
+        if (evicted) scheduler.now();
+    }
+
+    @Override
+    public void insertUpdate(DocumentEvent e) {
+        dirty.insert(e.getOffset(), e.getLength());
+        textEdited(e.getOffset(), 0, e.getLength());
+        edited();
+    }
+
+    @Override
+    public void removeUpdate(DocumentEvent e) {
+        dirty.remove(e.getOffset(), e.getLength());
+        textEdited(e.getOffset(), e.getLength(), 0);
+        edited();
+    }
+
+    // Attribute changes are style updates; they do not affect the token stream
+    @Override
+    public void changedUpdate(DocumentEvent e) { }
+
+    private void edited() {
+        version++;
+        if (keystroke == null) {
+            keystroke = latency.begin(Latency.Phase.KEYSTROKE);
+            keystrokeEdits = 0;
+        }
+        keystrokeEdits++;
+        lastEdit = System.nanoTime();
+        scheduler.edited(textComponent.getDocument().getLength());
+    }
+
+    private boolean startPass() {
+        if (dirty.isEmpty() && !evicted) return false;
+        CharSequence snapshot = text.get();
+        long passVersion = version;
+        // A rebuild with no edits relexes everything but changes no text
+        int offset = dirty.isEmpty() ? 0 : dirty.start;
+        int removed = dirty.isEmpty() ? 0 : dirty.removedLength();
+        int inserted = dirty.isEmpty() ? 0 : dirty.insertedLength();
+        boolean rebuild = evicted;
+
+        if (!passDue(snapshot, passVersion, offset, inserted)) return false;
+        latency.record(Latency.Phase.DEBOUNCE, System.nanoTime() - lastEdit);
+        TokenCache.Entry entry = storedTokens(passVersion);
+
+        executor.execute(() -> {
+            TokenChange change;
+            Latency.Span lexing = latency.begin(Latency.Phase.LEX);
+            try {
+                TokenBuffer tokens = entry != null ? entry.tokens(snapshot) : null;
+                // After an eviction the committed tokens are empty, so all of them are new
+                if (tokens == null && rebuild) tokens = lexer.tokenizeToBuffer(snapshot);
+                change = tokens != null
+                        ? new TokenChange(tokens, 0, lexer.getTokens().size(), tokens.size())
+                        : lexer.relex(snapshot, offset, removed, inserted, () -> version != passVersion);
+            } catch (CancellationException ex) {
+                // A newer pass will pick up these edits together with the ones that cancelled it
+                SwingUtilities.invokeLater(() -> scheduler.finished(snapshot.length(), -1));
+                return;
+            }
+            long cost = lexing.end(snapshot.length(), change.tokens.size(), change.newToIndex - change.fromIndex);
+            if (version != passVersion) {
+                SwingUtilities.invokeLater(() -> scheduler.finished(snapshot.length(), -1));
+                return;
+            }
+            P prepared = prepare(change, offset, removed, inserted);
+            Latency.Span parsing = latency.begin(Latency.Phase.PARSE);
+            SyntaxTree tree = checker.reparse(change);
+            cost += parsing.end(snapshot.length(), change.tokens.size(), tree.errorCount());
+            long passCost = cost;
+            SwingUtilities.invokeLater(() -> commit(passVersion, change, prepared, tree, passCost));
+        });
+        return true;
+    }
+
+    private void commit(long passVersion, TokenChange change, P prepared, SyntaxTree tree, long cost) {
+        int length = textComponent.getDocument().getLength();
+        if (version != passVersion) {
+            scheduler.finished(length, -1);
+            return;
+        }
+        lexer.commit(change);
+        checker.commit(tree);
+        evicted = false;
+        dirty.clear();
+
+        cost += committed(change, prepared, length);
+        if (keystroke != null) {
+            keystroke.end(length, change.tokens.size(), keystrokeEdits);
+            keystroke = null;
+        }
+        if (committedAction != null && passVersion >= committedVersion) {
+            Consumer<TokenBuffer> action = committedAction;
+            committedAction = null;
+            if (passVersion == committedVersion) action.accept(change.tokens);
+        }
+        scheduler.finished(length, cost);
+    }
+}
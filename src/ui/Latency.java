@@ -0,0 +1,111 @@
+package ui;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Where the time between a keystroke and its colours goes, phase by phase, kept in a histogram per
+ * phase; the timed passes are also reported as Flight Recorder events (EditorEvents).
+ *
+ * KEYSTROKE runs from the first edit a pass has not covered yet until a pass covering it is
+ * committed, so it includes the debounce delay and any edits that restarted it. DEBOUNCE is the
+ * wait from the last edit to the start of the pass, LEX and PARSE the background relex and
+ * reparse, STYLE applying the changed styles to the visible lines and PAINT painting the text.
+ */
+final class Latency {
+    enum Phase {
+        KEYSTROKE("tuş→renk"), DEBOUNCE("bekleme"), LEX("lex"), PARSE("parse"), STYLE("stil"), PAINT("çizim");
+
+        final String label;
+
+        Phase(String label) {
+            this.label = label;
+        }
+    }
+
+    private final Map<Phase, LatencyHistogram> histograms = new EnumMap<>(Phase.class);
+
+    Latency() {
+        for (Phase phase : Phase.values()) {
+            histograms.put(phase, new LatencyHistogram());
+        }
+    }
+
+    void record(Phase phase, long nanos) {
+        histograms.get(phase).record(nanos);
+    }
+
+    LatencyHistogram histogram(Phase phase) {
+        return histograms.get(phase);
+    }
+
+    void reset() {
+        histograms.values().forEach(LatencyHistogram::reset);
+    }
+
+    /**
+     * Starts timing a pass phase; KEYSTROKE, LEX, PARSE or STYLE.
+     */
+    Span begin(Phase phase) {
+        EditorEvents.PassEvent event = switch (phase) {
+            case KEYSTROKE -> new EditorEvents.Keystroke();
+            case LEX -> new EditorEvents.Lex();
+            case PARSE -> new EditorEvents.Parse();
+            case STYLE -> new EditorEvents.Highlight();
+            default -> throw new IllegalArgumentException(phase.name());
+        };
+        return new Span(phase, event);
+    }
+
+    /**
+     * p50 and p99 of the phases recorded so far, for the status bar.
+     */
+    String summary() {
+        StringBuilder out = new StringBuilder();
+        for (Phase phase : Phase.values()) {
+            LatencyHistogram histogram = histograms.get(phase);
+            if (histogram.count() == 0) continue;
+            if (!out.isEmpty()) out.append("  ·  ");
+            out.append(String.format(Locale.ROOT, "%s p50 %s p99 %s", phase.label,
+                    millis(histogram.percentile(50)), millis(histogram.percentile(99))));
+        }
+        return out.toString();
+    }
+
+    private static String millis(long nanos) {
+        double ms = nanos / 1e6;
+        return String.format(Locale.ROOT, ms < 10 ? "%.2f ms" : "%.0f ms", ms);
+    }
+
+    /**
+     * A phase being timed; end() records it, and commits its event if a recording wants it.
+     */
+    final class Span {
+        private final Phase phase;
+        private final EditorEvents.PassEvent event;
+        private final long start = System.nanoTime();
+
+        private Span(Phase phase, EditorEvents.PassEvent event) {
+            this.phase = phase;
+            this.event = event;
+            event.begin();
+        }
+
+        /**
+         * Returns the time taken in nanoseconds.
+         */
+        long end(int documentLength, int tokenCount, int detail) {
+            long nanos = System.nanoTime() - start;
+            record(phase, nanos);
+            event.end();
+            if (event.shouldCommit()) {
+                event.documentLength = documentLength;
+                event.tokenCount = tokenCount;
+                event.detail(detail);
+                event.commit();
+            }
+            return nanos;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package ui;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of latencies in nanoseconds after HdrHistogram: values below 128 are counted exactly,
+ * larger ones in buckets 1/64 of their power of two wide, so any value is known to within about
+ * 1.5% from nanoseconds up to over an hour with a fixed 2432 counters. Recording is a lock-free
+ * increment and may happen on any thread; percentiles read while recording goes on may be off by
+ * the values recorded meanwhile.
+ */
+final class LatencyHistogram {
+    private static final int SUB_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    // Larger values, 2^43 ns or about 2.4 hours, are counted as this
+    private static final long MAX_VALUE = (1L << 43) - 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(index(MAX_VALUE) + 1);
+    private final AtomicLong count = new AtomicLong();
+
+    void record(long nanos) {
+        counts.incrementAndGet(index(Math.max(0, Math.min(nanos, MAX_VALUE))));
+        count.incrementAndGet();
+    }
+
+    long count() {
+        return count.get();
+    }
+
+    /**
+     * Smallest value that percent of the recorded values are at or below (as far as the buckets
+     * tell), 0 if nothing was recorded.
+     */
+    long percentile(double percent) {
+        long total = count.get();
+        if (total == 0) return 0;
+        long wanted = Math.max(1, (long) Math.ceil(percent / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= wanted) return highest(i);
+        }
+        return MAX_VALUE;
+    }
+
+    void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+        count.set(0);
+    }
+
+    // Values with the same top SUB_BITS + 1 bits share a bucket; shift s covers [64s + 64, 64s + 127]
+    private static int index(long value) {
+        if (value < 2 * SUB_BUCKETS) return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return shift * SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    // Largest value counted in bucket index
+    private static long highest(int index) {
+        if (index < 2 * SUB_BUCKETS) return index;
+        int shift = index / SUB_BUCKETS - 1;
+        long top = index - (long) shift * SUB_BUCKETS;
+        return ((top + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,209 @@
+package ui;
+
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.Element;
+import javax.swing.text.JTextComponent;
+import java.awt.*;
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+
+/**
+ * Line numbers beside a text component, meant as the row header of its scroll pane.
+ *
+ * The y position of every line start is asked from the text component at most once and cached;
+ * an edit forgets the positions from its line onward, as only those can move. Painting finds the
+ * first line in the clip by binary search over the line starts, so it costs a few layout queries
+ * plus the visible lines wherever the viewport is in the file. After an edit only the visible rows
+ * from the edited line down are repainted, and none if the lines below did not move; the width
+ * follows the number of digits in the line count.
+ */
+class LineNumberPanel extends JPanel implements DocumentListener {
+    private static final int MARGIN = 5;
+    private static final int MIN_DIGITS = 2;
+    private static final int UNKNOWN = -1;
+
+    private final JTextComponent textPane;
+    private final Font font = new Font(Font.MONOSPACED, Font.PLAIN, 12);
+    private final Color lineNumberColor = Color.DARK_GRAY;
+
+    // Top of each line, or UNKNOWN; only the first lineCount entries mean anything
+    private int[] lineTops = new int[1024];
+    private int lineCount;
+    private int digits = MIN_DIGITS;
+    private int textWidth;
+
+    // Edits not repainted yet: the first edited line, the top of the line after it before the
+    // edit (UNKNOWN if not known or more than one edit), and whether lines were added or removed
+    private int damagedLine = UNKNOWN;
+    private int nextTopBefore;
+    private boolean linesChanged;
+
+    LineNumberPanel(JTextComponent textPane) {
+        this.textPane = textPane;
+        setBackground(new Color(230, 230, 230));
+        textPane.getDocument().addDocumentListener(this);
+        lineCount = textPane.getDocument().getDefaultRootElement().getElementCount();
+        invalidateFrom(0);
+
+        textPane.addPropertyChangeListener("document", e -> {
+            ((Document) e.getOldValue()).removeDocumentListener(this);
+            ((Document) e.getNewValue()).addDocumentListener(this);
+            lineCount = ((Document) e.getNewValue()).getDefaultRootElement().getElementCount();
+            relayout();
+        });
+        textPane.addPropertyChangeListener("font", e -> relayout());
+        updateDigits();
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        int digitWidth = getFontMetrics(font).charWidth('0');
+        return new Dimension(digits * digitWidth + 2 * MARGIN, Integer.MAX_VALUE);
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        Graphics2D g2 = (Graphics2D) g;
+        g2.setFont(font);
+        g2.setColor(lineNumberColor);
+        // A new width rewraps the lines
+        if (textPane.getWidth() != textWidth) {
+            textWidth = textPane.getWidth();
+            invalidateFrom(0);
+        }
+
+        Element root = textPane.getDocument().getDefaultRootElement();
+        FontMetrics fm = g2.getFontMetrics();
+        Rectangle clip = g2.getClipBounds();
+        int count = Math.min(lineCount, root.getElementCount());
+        int xBase = getWidth() - MARGIN;
+
+        for (int i = lineAt(root, count, clip.y - fm.getDescent()); i < count; i++) {
+            int top = lineTop(root, i);
+            if (top == UNKNOWN) return;
+            int y = top + fm.getAscent();
+            if (y > clip.y + clip.height) break;
+
+            String lineNumber = String.valueOf(i + 1);
+            g2.drawString(lineNumber, xBase - fm.stringWidth(lineNumber), y);
+        }
+    }
+
+    // Last line starting at or above y, or 0
+    private int lineAt(Element root, int count, int y) {
+        int low = 0;
+        int high = count - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            int top = lineTop(root, middle);
+            if (top != UNKNOWN && top <= y) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    private int lineTop(Element root, int line) {
+        int top = lineTops[line];
+        if (top != UNKNOWN) return top;
+        try {
+            Rectangle2D r = textPane.modelToView2D(root.getElement(line).getStartOffset());
+            // Not laid out yet; asked again on the next paint
+            if (r == null) return UNKNOWN;
+            top = (int) r.getY();
+        } catch (BadLocationException ex) {
+            return UNKNOWN;
+        }
+        lineTops[line] = top;
+        return top;
+    }
+
+    private void invalidateFrom(int line) {
+        if (lineCount > lineTops.length) {
+            lineTops = Arrays.copyOf(lineTops, Math.max(lineCount, lineTops.length + (lineTops.length >> 1)));
+        }
+        if (line < lineCount) Arrays.fill(lineTops, line, lineCount, UNKNOWN);
+    }
+
+    // Every line may have moved
+    private void relayout() {
+        invalidateFrom(0);
+        damagedLine = UNKNOWN;
+        updateDigits();
+        repaint();
+    }
+
+    private boolean updateDigits() {
+        int newDigits = Math.max(MIN_DIGITS, String.valueOf(lineCount).length());
+        if (newDigits == digits) return false;
+        digits = newDigits;
+        revalidate();
+        return true;
+    }
+
+    @Override
+    public void insertUpdate(DocumentEvent e) {
+        edited(e);
+    }
+
+    @Override
+    public void removeUpdate(DocumentEvent e) {
+        edited(e);
+    }
+
+    @Override
+    public void changedUpdate(DocumentEvent e) {
+        // Only colours change; the lines stay where they are
+    }
+
+    // Called before the text component has laid out the edit, so positions are only read later
+    private void edited(DocumentEvent e) {
+        Element root = e.getDocument().getDefaultRootElement();
+        int line = root.getElementIndex(e.getOffset());
+        boolean changed = e.getChange(root) != null;
+
+        if (damagedLine == UNKNOWN) {
+            damagedLine = line;
+            nextTopBefore = !changed && line + 1 < lineCount ? lineTops[line + 1] : UNKNOWN;
+            linesChanged = changed;
+            SwingUtilities.invokeLater(this::repaintDamage);
+        } else {
+            damagedLine = Math.min(damagedLine, line);
+            nextTopBefore = UNKNOWN;
+            linesChanged |= changed;
+        }
+        lineCount = root.getElementCount();
+        invalidateFrom(line);
+    }
+
+    private void repaintDamage() {
+        int line = damagedLine;
+        if (line == UNKNOWN) return;
+        damagedLine = UNKNOWN;
+        if (updateDigits()) {
+            repaint();
+            return;
+        }
+
+        Element root = textPane.getDocument().getDefaultRootElement();
+        int count = Math.min(lineCount, root.getElementCount());
+        // Within a line and no rewrapping: every number is where it was
+        if (!linesChanged && (line + 1 >= count
+                || nextTopBefore != UNKNOWN && lineTop(root, line + 1) == nextTopBefore)) {
+            return;
+        }
+
+        Rectangle visible = getVisibleRect();
+        int top = line < count ? lineTop(root, line) : UNKNOWN;
+        int from = top == UNKNOWN ? visible.y : Math.max(visible.y, top);
+        int to = visible.y + visible.height;
+        if (from < to) repaint(0, from, getWidth(), to - from);
+    }
+}
@@ -0,0 +1,68 @@
+package ui;
+
+import javax.swing.text.JTextComponent;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
+
+import lexer.Lexer;
+import lexer.TokenChange;
+import model.TokenBuffer;
+
+/**
+ * Highlighting for TokenView, which colours the text while painting from the committed tokens.
+ * A committed pass only repaints; the document itself is never modified for highlighting.
+ *
+ * Between an edit and the pass that covers it, the committed tokens are mapped through the dirty
+ * range: text before it keeps its colours, text after it is looked up shifted back by the edit's
+ * length delta, and the edited characters themselves are painted uncoloured. While the caches are
+ * evicted the text is painted uncoloured until a pass has lexed it all again.
+ *
+ * Painting itself is timed by the text component.
+ */
+class PaintHighlighter extends HighlightPasses<Void> {
+    private final JTextComponent textComponent;
+
+    PaintHighlighter(JTextComponent textComponent, Supplier<CharSequence> text, Lexer lexer,
+                     ExecutorService executor, SyntaxChecker checker, Latency latency,
+                     DebounceScheduler scheduler) {
+        super(textComponent, text, lexer, executor, checker, latency, scheduler);
+        this.textComponent = textComponent;
+    }
+
+    /**
+     * Committed tokens; offsets are those of the document minus the current dirty range.
+     */
+    TokenBuffer tokens() {
+        return lexer.getTokens();
+    }
+
+    /**
+     * Token stream offset of a document offset, or -1 when the character was edited after the
+     * last committed pass.
+     */
+    int tokenOffset(int offset) {
+        if (dirty.isEmpty() || offset < dirty.start) return offset;
+        if (offset >= dirty.end) return offset - dirty.delta;
+        return -1;
+    }
+
+    /**
+     * End of the stretch starting at offset that tokenOffset() maps in one piece.
+     */
+    int mappedEnd(int offset) {
+        if (dirty.isEmpty() || offset >= dirty.end) return Integer.MAX_VALUE;
+        return offset < dirty.start ? dirty.start : dirty.end;
+    }
+
+    @Override
+    Void prepare(TokenChange change, int offset, int removed, int inserted) {
+        return null;
+    }
+
+    @Override
+    long committed(TokenChange change, Void prepared, int documentLength) {
+        // Only the visible lines are painted, and they are the only ones that look at the tokens
+        textComponent.repaint();
+        return 0;
+    }
+}
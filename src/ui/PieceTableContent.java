@@ -0,0 +1,665 @@
+package ui;
+
+import javax.swing.text.AbstractDocument;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Position;
+import javax.swing.text.Segment;
+import javax.swing.undo.AbstractUndoableEdit;
+import javax.swing.undo.CannotRedoException;
+import javax.swing.undo.CannotUndoException;
+import javax.swing.undo.UndoableEdit;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Document content stored as a piece table: the text is a sequence of pieces, each a range of a
+ * char array that is never written again once the piece refers to it. Inserted text is appended
+ * to fixed-size add chunks, so an edit only rewrites the piece list, never the characters. Large
+ * inserts, such as the chunks of a file being loaded, get an array of their own; when all their
+ * characters are Latin-1 it is a byte array, as in a compact String, which halves the size of
+ * most source files.
+ *
+ * Every edit produces a new immutable Snapshot. It is a CharSequence over the pieces that the
+ * lexer and parser can read on any thread without the text being copied into a String.
+ *
+ * Positions are kept in blocks of sorted marks, each block with a pending shift of its own, so an
+ * edit adjusts the marks of one block and the shift of the blocks after it instead of every mark
+ * behind the edit. Marks at the same offset move alike, so like GapContent a position is shared
+ * by everyone asking for its offset; the end of one line element and the start of the next are
+ * one mark.
+ */
+class PieceTableContent implements AbstractDocument.Content {
+    private static final int CHUNK_SIZE = 64 * 1024;
+    // Inserts at least this long are kept in an array of their own instead of an add chunk
+    private static final int LARGE_INSERT = CHUNK_SIZE / 4;
+    // Mark blocks are split when they reach twice this size
+    private static final int BLOCK_SIZE = 256;
+
+    private Snapshot text;
+    private char[] chunk = new char[CHUNK_SIZE];
+    private int chunkFill;
+
+    // Positions, in blocks of marks sorted by offset
+    private MarkBlock[] blocks = {new MarkBlock()};
+    private int blockCount = 1;
+    private int markCount;
+    private final ReferenceQueue<Position> unusedQueue = new ReferenceQueue<>();
+    private int unusedMarks;
+
+    PieceTableContent() {
+        // AbstractDocument expects the content to end with an implied newline
+        chunk[0] = '\n';
+        chunkFill = 1;
+        text = new Snapshot(new char[][] {chunk}, new byte[1][], new int[] {0}, new int[] {0, 1}, 1);
+    }
+
+    /**
+     * The current text without the implied trailing newline; never changes after it is returned.
+     */
+    Snapshot snapshot() {
+        return text;
+    }
+
+    @Override
+    public int length() {
+        return text.total();
+    }
+
+    @Override
+    public Position createPosition(int offset) throws BadLocationException {
+        if (offset < 0 || offset > length()) throw new BadLocationException("Invalid position", offset);
+        purgeUnusedMarks();
+        int b = blockFor(offset);
+        MarkBlock block = blocks[b];
+        int index = block.lowerBound(offset + 1);
+        if (index > 0 && block.offsets[index - 1] + block.delta == offset) {
+            Position shared = block.marks[index - 1].get();
+            if (shared != null) return shared;
+        }
+
+        StickyPosition position = new StickyPosition();
+        Mark mark = new Mark(position, unusedQueue);
+        position.mark = mark;
+        block.insert(index, offset, mark);
+        if (block.size == 2 * BLOCK_SIZE) splitBlock(b);
+        markCount++;
+        return position;
+    }
+
+    @Override
+    public UndoableEdit insertString(int where, String str) throws BadLocationException {
+        if (where < 0 || where >= length()) throw new BadLocationException("Invalid insert", where);
+        if (str.isEmpty()) return null;
+        insert(where, str);
+        return new InsertUndo(where, str.length());
+    }
+
+    @Override
+    public UndoableEdit remove(int where, int nitems) throws BadLocationException {
+        if (where < 0 || nitems < 0 || where + nitems >= length()) {
+            throw new BadLocationException("Invalid remove", where + nitems);
+        }
+        if (nitems == 0) return null;
+        String removed = getString(where, nitems);
+        delete(where, nitems);
+        return new RemoveUndo(where, removed);
+    }
+
+    @Override
+    public String getString(int where, int len) throws BadLocationException {
+        checkRange(where, len);
+        char[] chars = new char[len];
+        text.getChars(where, where + len, chars, 0);
+        return new String(chars);
+    }
+
+    @Override
+    public void getChars(int where, int len, Segment txt) throws BadLocationException {
+        checkRange(where, len);
+        Snapshot current = text;
+        int piece = current.pieceAt(where);
+        int available = current.offsets[piece + 1] - where;
+        if ((len <= available || txt.isPartialReturn()) && current.arrays[piece] != null) {
+            // Point the segment at the piece's array instead of copying, like GapContent does
+            txt.array = current.arrays[piece];
+            txt.offset = current.starts[piece] + where - current.offsets[piece];
+            txt.count = Math.min(len, available);
+            return;
+        }
+        // Latin-1 pieces and ranges across pieces are copied; a partial return stops at the piece's end
+        if (txt.isPartialReturn()) len = Math.min(len, available);
+        char[] chars = new char[len];
+        current.getChars(where, where + len, chars, 0);
+        txt.array = chars;
+        txt.offset = 0;
+        txt.count = len;
+    }
+
+    private void checkRange(int where, int len) throws BadLocationException {
+        if (where < 0 || len < 0 || where + len > length()) {
+            throw new BadLocationException("Invalid range", where + len);
+        }
+    }
+
+    private void insert(int where, String str) {
+        int length = str.length();
+        char[] array = null;
+        byte[] latin1 = null;
+        int start;
+        if (length >= LARGE_INSERT) {
+            latin1 = latin1(str);
+            if (latin1 == null) array = str.toCharArray();
+            start = 0;
+        } else {
+            if (chunkFill + length > CHUNK_SIZE) {
+                chunk = new char[CHUNK_SIZE];
+                chunkFill = 0;
+            }
+            str.getChars(0, length, chunk, chunkFill);
+            array = chunk;
+            start = chunkFill;
+            chunkFill += length;
+        }
+        text = text.insert(where, array, latin1, start, length);
+        marksInserted(where, length);
+    }
+
+    // The characters of str as bytes, or null if any of them is not Latin-1
+    private static byte[] latin1(String str) {
+        for (int i = 0; i < str.length(); i++) {
+            if (str.charAt(i) > 0xFF) return null;
+        }
+        return str.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    private void delete(int where, int length) {
+        text = text.delete(where, length);
+        marksRemoved(where, length);
+    }
+
+    // --- Marks ---
+
+    private void marksInserted(int where, int length) {
+        // Marks at the very start stay there, as in GapContent
+        shiftFrom(where == 0 ? 1 : where, length);
+    }
+
+    private void marksRemoved(int where, int length) {
+        int end = where + length;
+        // Marks inside the removed range collapse onto its start
+        for (int b = firstBlockReaching(where); b < blockCount && blocks[b].first() < end; b++) {
+            MarkBlock block = blocks[b];
+            for (int i = block.lowerBound(where); i < block.size && block.offsets[i] + block.delta < end; i++) {
+                block.offsets[i] = where - block.delta;
+            }
+        }
+        shiftFrom(end, -length);
+    }
+
+    // Moves every mark at or after offset by delta
+    private void shiftFrom(int offset, int delta) {
+        int b = firstBlockReaching(offset);
+        if (b == blockCount) return;
+        MarkBlock block = blocks[b];
+        int i = block.lowerBound(offset);
+        if (i == 0) {
+            block.delta += delta;
+        } else {
+            for (; i < block.size; i++) block.offsets[i] += delta;
+        }
+        for (b++; b < blockCount; b++) blocks[b].delta += delta;
+    }
+
+    // Index of the first block whose last mark is at or after offset, or blockCount
+    private int firstBlockReaching(int offset) {
+        int low = 0;
+        int high = blockCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (blocks[mid].size == 0 || blocks[mid].last() < offset) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    // Index of the block a new mark at offset goes into
+    private int blockFor(int offset) {
+        int low = 0;
+        int high = blockCount - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (blocks[mid].first() <= offset) low = mid;
+            else high = mid - 1;
+        }
+        return low;
+    }
+
+    private void splitBlock(int b) {
+        MarkBlock block = blocks[b];
+        MarkBlock upper = new MarkBlock();
+        int half = block.size / 2;
+        upper.delta = block.delta;
+        upper.size = block.size - half;
+        System.arraycopy(block.offsets, half, upper.offsets, 0, upper.size);
+        System.arraycopy(block.marks, half, upper.marks, 0, upper.size);
+        Arrays.fill(block.marks, half, block.size, null);
+        block.size = half;
+        upper.renumber(0);
+
+        if (blockCount == blocks.length) blocks = Arrays.copyOf(blocks, blockCount * 2);
+        System.arraycopy(blocks, b + 1, blocks, b + 2, blockCount - b - 1);
+        blocks[b + 1] = upper;
+        blockCount++;
+    }
+
+    // Drops the marks whose positions were garbage collected once enough of them have piled up
+    private void purgeUnusedMarks() {
+        while (unusedQueue.poll() != null) unusedMarks++;
+        if (unusedMarks <= Math.max(5, markCount / 10)) return;
+
+        MarkBlock[] packed = new MarkBlock[markCount / BLOCK_SIZE + 1];
+        int count = 0;
+        MarkBlock current = new MarkBlock();
+        packed[count++] = current;
+        markCount = 0;
+        for (int b = 0; b < blockCount; b++) {
+            MarkBlock block = blocks[b];
+            for (int i = 0; i < block.size; i++) {
+                Mark mark = block.marks[i];
+                if (mark.get() == null) continue;
+                if (current.size == BLOCK_SIZE) {
+                    current = new MarkBlock();
+                    packed[count++] = current;
+                }
+                current.offsets[current.size] = block.offsets[i] + block.delta;
+                current.marks[current.size] = mark;
+                mark.block = current;
+                mark.index = current.size;
+                current.size++;
+                markCount++;
+            }
+        }
+        blocks = packed;
+        blockCount = count;
+        unusedMarks = 0;
+    }
+
+    /**
+     * Up to 2 * BLOCK_SIZE consecutive marks; a mark's offset is its entry plus the block's delta.
+     */
+    private static final class MarkBlock {
+        final int[] offsets = new int[2 * BLOCK_SIZE];
+        final Mark[] marks = new Mark[2 * BLOCK_SIZE];
+        int size;
+        int delta;
+
+        int first() { return offsets[0] + delta; }
+
+        int last() { return offsets[size - 1] + delta; }
+
+        // First index whose offset is at least offset
+        int lowerBound(int offset) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (offsets[mid] + delta < offset) low = mid + 1;
+                else high = mid;
+            }
+            return low;
+        }
+
+        void insert(int index, int offset, Mark mark) {
+            System.arraycopy(offsets, index, offsets, index + 1, size - index);
+            System.arraycopy(marks, index, marks, index + 1, size - index);
+            offsets[index] = offset - delta;
+            marks[index] = mark;
+            mark.block = this;
+            size++;
+            renumber(index);
+        }
+
+        void renumber(int from) {
+            for (int i = from; i < size; i++) {
+                marks[i].block = this;
+                marks[i].index = i;
+            }
+        }
+    }
+
+    private static final class Mark extends WeakReference<Position> {
+        MarkBlock block;
+        int index;
+
+        Mark(Position position, ReferenceQueue<Position> queue) {
+            super(position, queue);
+        }
+
+        int offset() {
+            return block.offsets[index] + block.delta;
+        }
+    }
+
+    private static final class StickyPosition implements Position {
+        Mark mark;
+
+        @Override
+        public int getOffset() {
+            return mark.offset();
+        }
+
+        @Override
+        public String toString() {
+            return Integer.toString(getOffset());
+        }
+    }
+
+    // --- Undo ---
+
+    private final class InsertUndo extends AbstractUndoableEdit {
+        private final int offset;
+        private final int length;
+        private String string;
+
+        InsertUndo(int offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public void undo() throws CannotUndoException {
+            super.undo();
+            try {
+                string = getString(offset, length);
+                delete(offset, length);
+            } catch (BadLocationException ex) {
+                throw new CannotUndoException();
+            }
+        }
+
+        @Override
+        public void redo() throws CannotRedoException {
+            super.redo();
+            insert(offset, string);
+            string = null;
+        }
+    }
+
+    private final class RemoveUndo extends AbstractUndoableEdit {
+        private final int offset;
+        private final String string;
+
+        RemoveUndo(int offset, String string) {
+            this.offset = offset;
+            this.string = string;
+        }
+
+        @Override
+        public void undo() throws CannotUndoException {
+            super.undo();
+            insert(offset, string);
+        }
+
+        @Override
+        public void redo() throws CannotRedoException {
+            super.redo();
+            delete(offset, string.length());
+        }
+    }
+
+    /**
+     * Immutable view of the content at one point in time. length() excludes the implied trailing
+     * newline, so the sequence reads like the document's text.
+     */
+    static final class Snapshot implements CharSequence {
+        // Each piece is a range of either arrays[i] or, if that is null, the Latin-1 bytes[i]
+        final char[][] arrays;
+        final byte[][] bytes;
+        final int[] starts;
+        // Offset of each piece in the text, plus the total length at the end
+        final int[] offsets;
+        final int count;
+        private final int length;
+        // Last piece read by charAt(); only a hint, so racing threads are harmless
+        private int hint;
+
+        private Snapshot(char[][] arrays, byte[][] bytes, int[] starts, int[] offsets, int count) {
+            this.arrays = arrays;
+            this.bytes = bytes;
+            this.starts = starts;
+            this.offsets = offsets;
+            this.count = count;
+            this.length = offsets[count] - 1;
+        }
+
+        int total() {
+            return offsets[count];
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index >= length) throw new IndexOutOfBoundsException(index);
+            int piece = hint;
+            if (index < offsets[piece] || index >= offsets[piece + 1]) {
+                if (index < 0) throw new IndexOutOfBoundsException(index);
+                piece = index == offsets[piece + 1] ? piece + 1 : pieceAt(index);
+                hint = piece;
+            }
+            char[] chars = arrays[piece];
+            int at = starts[piece] + index - offsets[piece];
+            return chars != null ? chars[at] : (char) (bytes[piece][at] & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            if (start < 0 || start > end || end > length()) {
+                throw new IndexOutOfBoundsException("start " + start + ", end " + end);
+            }
+            return new Slice(this, start, end);
+        }
+
+        @Override
+        public String toString() {
+            char[] chars = new char[length()];
+            getChars(0, chars.length, chars, 0);
+            return new String(chars);
+        }
+
+        /**
+         * Copies characters [begin, end) into dst, piece by piece.
+         */
+        void getChars(int begin, int end, char[] dst, int dstBegin) {
+            if (begin >= end) return;
+            for (int piece = pieceAt(begin); begin < end; piece++) {
+                int from = starts[piece] + begin - offsets[piece];
+                int n = Math.min(end, offsets[piece + 1]) - begin;
+                if (arrays[piece] != null) {
+                    System.arraycopy(arrays[piece], from, dst, dstBegin, n);
+                } else {
+                    inflate(bytes[piece], from, dst, dstBegin, n);
+                }
+                begin += n;
+                dstBegin += n;
+            }
+        }
+
+        /**
+         * Writes the text to writer straight from the pieces.
+         */
+        void writeTo(Writer writer) throws IOException {
+            char[] buffer = null;
+            for (int piece = 0; piece < count && offsets[piece] < length; piece++) {
+                int n = Math.min(length, offsets[piece + 1]) - offsets[piece];
+                if (arrays[piece] != null) {
+                    writer.write(arrays[piece], starts[piece], n);
+                    continue;
+                }
+                if (buffer == null) buffer = new char[8192];
+                for (int done = 0; done < n; done += buffer.length) {
+                    int block = Math.min(buffer.length, n - done);
+                    inflate(bytes[piece], starts[piece] + done, buffer, 0, block);
+                    writer.write(buffer, 0, block);
+                }
+            }
+        }
+
+        private static void inflate(byte[] src, int from, char[] dst, int dstBegin, int n) {
+            for (int i = 0; i < n; i++) {
+                dst[dstBegin + i] = (char) (src[from + i] & 0xFF);
+            }
+        }
+
+        // Index of the piece containing offset
+        int pieceAt(int offset) {
+            int low = 0;
+            int high = count - 1;
+            while (low < high) {
+                int mid = (low + high + 1) >>> 1;
+                if (offsets[mid] <= offset) low = mid;
+                else high = mid - 1;
+            }
+            return low;
+        }
+
+        Snapshot insert(int where, char[] array, byte[] latin1, int start, int length) {
+            int piece = pieceAt(where);
+            int pieceStart = offsets[piece];
+
+            // Typing: the new text directly follows the previous piece in the same array
+            if (where == pieceStart && piece > 0 && array != null
+                    && arrays[piece - 1] == array
+                    && starts[piece - 1] + (pieceStart - offsets[piece - 1]) == start) {
+                int[] newOffsets = offsets.clone();
+                for (int i = piece; i <= count; i++) newOffsets[i] += length;
+                return new Snapshot(arrays, bytes, starts, newOffsets, count);
+            }
+
+            boolean split = where > pieceStart;
+            int newCount = count + (split ? 2 : 1);
+            char[][] newArrays = new char[newCount][];
+            byte[][] newBytes = new byte[newCount][];
+            int[] newStarts = new int[newCount];
+            int[] newOffsets = new int[newCount + 1];
+
+            int at = split ? piece + 1 : piece;
+            System.arraycopy(arrays, 0, newArrays, 0, at);
+            System.arraycopy(bytes, 0, newBytes, 0, at);
+            System.arraycopy(starts, 0, newStarts, 0, at);
+            System.arraycopy(offsets, 0, newOffsets, 0, at);
+
+            newArrays[at] = array;
+            newBytes[at] = latin1;
+            newStarts[at] = start;
+            newOffsets[at] = where;
+
+            int tail = at + 1;
+            if (split) {
+                // Right half of the split piece
+                newArrays[tail] = arrays[piece];
+                newBytes[tail] = bytes[piece];
+                newStarts[tail] = starts[piece] + where - pieceStart;
+                newOffsets[tail] = where + length;
+                tail++;
+                System.arraycopy(arrays, piece + 1, newArrays, tail, count - piece - 1);
+                System.arraycopy(bytes, piece + 1, newBytes, tail, count - piece - 1);
+                System.arraycopy(starts, piece + 1, newStarts, tail, count - piece - 1);
+                for (int i = piece + 1; i <= count; i++) newOffsets[tail + i - piece - 1] = offsets[i] + length;
+            } else {
+                System.arraycopy(arrays, piece, newArrays, tail, count - piece);
+                System.arraycopy(bytes, piece, newBytes, tail, count - piece);
+                System.arraycopy(starts, piece, newStarts, tail, count - piece);
+                for (int i = piece; i <= count; i++) newOffsets[tail + i - piece] = offsets[i] + length;
+            }
+            return new Snapshot(newArrays, newBytes, newStarts, newOffsets, newCount);
+        }
+
+        Snapshot delete(int where, int length) {
+            int end = where + length;
+            int first = pieceAt(where);
+            int last = pieceAt(end - 1);
+            boolean keepLeft = where > offsets[first];
+            boolean keepRight = end < offsets[last + 1];
+
+            int newCount = first + (keepLeft ? 1 : 0) + (keepRight ? 1 : 0) + count - last - 1;
+            char[][] newArrays = new char[newCount][];
+            byte[][] newBytes = new byte[newCount][];
+            int[] newStarts = new int[newCount];
+            int[] newOffsets = new int[newCount + 1];
+
+            System.arraycopy(arrays, 0, newArrays, 0, first);
+            System.arraycopy(bytes, 0, newBytes, 0, first);
+            System.arraycopy(starts, 0, newStarts, 0, first);
+            System.arraycopy(offsets, 0, newOffsets, 0, first);
+            int at = first;
+            if (keepLeft) {
+                newArrays[at] = arrays[first];
+                newBytes[at] = bytes[first];
+                newStarts[at] = starts[first];
+                newOffsets[at] = offsets[first];
+                at++;
+            }
+            if (keepRight) {
+                newArrays[at] = arrays[last];
+                newBytes[at] = bytes[last];
+                newStarts[at] = starts[last] + end - offsets[last];
+                newOffsets[at] = where;
+                at++;
+            }
+            System.arraycopy(arrays, last + 1, newArrays, at, count - last - 1);
+            System.arraycopy(bytes, last + 1, newBytes, at, count - last - 1);
+            System.arraycopy(starts, last + 1, newStarts, at, count - last - 1);
+            for (int i = last + 1; i <= count; i++) newOffsets[at + i - last - 1] = offsets[i] - length;
+            return new Snapshot(newArrays, newBytes, newStarts, newOffsets, newCount);
+        }
+    }
+
+    /**
+     * subSequence() of a Snapshot; reads through to it without copying.
+     */
+    private static final class Slice implements CharSequence {
+        private final Snapshot text;
+        private final int start;
+        private final int end;
+
+        Slice(Snapshot text, int start, int end) {
+            this.text = text;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public int length() {
+            return end - start;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= end - start) throw new IndexOutOfBoundsException(index);
+            return text.charAt(start + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            if (from < 0 || from > to || to > end - start) {
+                throw new IndexOutOfBoundsException("start " + from + ", end " + to);
+            }
+            return new Slice(text, start + from, start + to);
+        }
+
+        @Override
+        public String toString() {
+            char[] chars = new char[end - start];
+            text.getChars(start, end, chars, 0);
+            return new String(chars);
+        }
+    }
+}
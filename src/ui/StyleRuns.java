@@ -0,0 +1,138 @@
+package ui;
+
+import lexer.TokenChange;
+import model.SpanList;
+import model.TokenBuffer;
+
+/**
+ * Sorted, non-overlapping character runs with a style id (the TokenType ordinal).
+ * Adjacent tokens of the same type are merged into one run.
+ *
+ * The highlighter keeps the runs it last applied to the document in one instance; update()
+ * compares them with the relexed tokens and returns only the runs that have to be re-applied.
+ * The runs are a SpanList, so the instance update() returns shares the runs before and after the
+ * edit with this one and costs the replaced runs, not a copy of the document's runs.
+ * An instance handed to another thread is not modified afterwards.
+ */
+class StyleRuns {
+    private final SpanList runs = new SpanList();
+
+    int size() { return runs.size(); }
+
+    long memoryBytes() { return runs.memoryBytes(); }
+
+    int start(int i) { return runs.start(i); }
+
+    int end(int i) { return runs.end(i); }
+
+    int style(int i) { return runs.tag(i); }
+
+    void add(int start, int end, int style) {
+        if (!runs.extendLast(start, end, style)) runs.add(start, end, style);
+    }
+
+    /**
+     * Runs after an edit, together with the ones the document does not carry yet.
+     */
+    static class Diff {
+        final StyleRuns runs;
+        final StyleRuns changed;
+
+        Diff(StyleRuns runs, StyleRuns changed) {
+            this.runs = runs;
+            this.changed = changed;
+        }
+    }
+
+    /**
+     * Replaces the runs touched by an edit with the runs of the new tokens, without modifying this
+     * instance, and collects the runs whose bounds or style differ from what the document carries.
+     *
+     * @param change   result of relexing the edit
+     * @param offset   start of the edit
+     * @param removed  characters removed at offset
+     * @param inserted characters inserted at offset
+     */
+    Diff update(TokenChange change, int offset, int removed, int inserted) {
+        TokenBuffer tokens = change.tokens;
+        int delta = inserted - removed;
+
+        // Character region covered by the relexed tokens and the edit itself, in new coordinates
+        int regionStart;
+        int regionEnd;
+        if (change.fromIndex < change.newToIndex) {
+            regionStart = tokens.start(change.fromIndex);
+            regionEnd = tokens.end(change.newToIndex - 1);
+        } else {
+            regionStart = change.fromIndex > 0 ? tokens.end(change.fromIndex - 1) : 0;
+            regionEnd = regionStart;
+        }
+        regionStart = Math.min(regionStart, offset);
+        regionEnd = Math.max(regionEnd, offset + inserted);
+
+        // Widen to the bounds of the old runs it overlaps; those are token boundaries on both sides
+        int first = runs.firstEndingAfter(regionStart);
+        int last = runs.firstStartingAtOrAfter(regionEnd - delta) - 1;
+        if (first <= last) {
+            regionStart = Math.min(regionStart, start(first));
+            regionEnd = Math.max(regionEnd, end(last) + delta);
+        } else {
+            last = first - 1;
+        }
+
+        StyleRuns region = new StyleRuns();
+        for (int i = tokens.firstEndingAfter(regionStart); i < tokens.size(); i++) {
+            if (tokens.start(i) >= regionEnd) break;
+            region.add(tokens.start(i), tokens.end(i), tokens.type(i).ordinal());
+        }
+
+        StyleRuns changed = new StyleRuns();
+        int k = first;
+        for (int i = 0; i < region.size(); i++) {
+            int start = region.start(i);
+            while (k <= last && (shiftedStart(k, offset, removed, delta) < start)) {
+                k++;
+            }
+            boolean same = k <= last
+                    && shiftedStart(k, offset, removed, delta) == start
+                    && end(k) + (start(k) >= offset + removed ? delta : 0) == region.end(i)
+                    && style(k) == region.style(i);
+            if (!same) {
+                changed.add(start, region.end(i), region.style(i));
+            }
+        }
+
+        return new Diff(splice(first, last + 1, region, delta), changed);
+    }
+
+    /**
+     * Start of run k after the edit, or -1 when the run overlaps the edited characters and its
+     * attributes in the document can no longer be trusted.
+     */
+    private int shiftedStart(int k, int offset, int removed, int delta) {
+        if (end(k) <= offset) return start(k);
+        if (start(k) >= offset + removed) return start(k) + delta;
+        return -1;
+    }
+
+    // These runs with [from, to) replaced by region and the runs after them moved by delta; the
+    // runs where the pieces meet are added one by one so that those of the same style merge
+    private StyleRuns splice(int from, int to, StyleRuns region, int delta) {
+        StyleRuns result = new StyleRuns();
+        int head = Math.max(0, from - 1);
+        int tail = Math.min(size(), to + 1);
+        result.runs.addAll(runs, 0, head, 0);
+        for (int i = head; i < from; i++) {
+            result.add(start(i), end(i), style(i));
+        }
+        int n = region.size();
+        if (n > 0) result.add(region.start(0), region.end(0), region.style(0));
+        if (n > 2) result.runs.addAll(region.runs, 1, n - 1, 0);
+        if (n > 1) result.add(region.start(n - 1), region.end(n - 1), region.style(n - 1));
+        for (int i = to; i < tail; i++) {
+            result.add(start(i) + delta, end(i) + delta, style(i));
+        }
+        result.runs.addAll(runs, tail, size(), delta);
+        return result;
+    }
+}
@@ -0,0 +1,48 @@
+package ui;
+
+import java.util.function.Consumer;
+
+import lexer.TokenChange;
+import model.TokenBuffer;
+import parser.SyntaxTree;
+
+/**
+ * Checks the syntax while typing. Each highlighting pass reparses its token change against the
+ * last committed SyntaxTree on the background thread, so only the statements the edit touched are
+ * parsed again; the new tree is committed on the EDT together with the pass's tokens.
+ */
+class SyntaxChecker {
+    private static final SyntaxTree EMPTY = SyntaxTree.parse(new TokenBuffer(""));
+
+    // Called on the EDT with every committed tree
+    private final Consumer<SyntaxTree> listener;
+    private volatile SyntaxTree tree = EMPTY;
+
+    SyntaxChecker(Consumer<SyntaxTree> listener) {
+        this.listener = listener;
+    }
+
+    SyntaxTree tree() {
+        return tree;
+    }
+
+    /**
+     * Tree after change, which must be relative to the committed tokens; not committed yet.
+     */
+    SyntaxTree reparse(TokenChange change) {
+        return tree.reparse(change);
+    }
+
+    /**
+     * Drops the tree to free its memory; the next change must then be relative to no tokens at
+     * all, and is parsed from scratch. The listener is not told.
+     */
+    void release() {
+        tree = EMPTY;
+    }
+
+    void commit(SyntaxTree next) {
+        tree = next;
+        listener.accept(next);
+    }
+}
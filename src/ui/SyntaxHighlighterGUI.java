@@ -1,28 +1,46 @@
 package ui;
 
 import javax.swing.*;
-import javax.swing.event.DocumentEvent;
-import javax.swing.event.DocumentListener;
-import javax.swing.text.*;
+import javax.swing.text.Document;
 import java.awt.*;
 import java.awt.event.*;
-import java.awt.geom.Rectangle2D;
 import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
-import lexer.Lexer;
-import model.Token;
+import model.TokenBuffer;
 import model.TokenType;
-import parser.Parser;
+import parser.Diagnostic;
 
 public class SyntaxHighlighterGUI {
 
     private static final Map<TokenType, Color> TOKEN_COLORS = new HashMap<>();
-    private static final int HIGHLIGHT_DELAY = 300;
+    // Vurgulama beklemesi son geçişlerin belge boyuna göre ölçülen maliyetinden seçilir:
+    // küçük dosyada neredeyse anında, büyük dosyada en fazla bu kadar
+    private static final int HIGHLIGHT_MIN_DELAY = 10;
+    private static final int HIGHLIGHT_MAX_DELAY = 600;
+    // -Dhighlighter.paint=true: renkler belgeye yazılmaz, çizim sırasında token'lardan okunur
+    private static final boolean PAINT_MODE = Boolean.getBoolean("highlighter.paint");
+    // Büyük dosyaların token'ları diskte saklanır, yeniden açılınca lex edilmeden renklendirilir;
+    // -Dhighlighter.cache=DİZİN ile yeri değiştirilebilir, en eski kullanılanlar silinerek sınırda tutulur
+    private static final Path TOKEN_CACHE_DIR = Path.of(System.getProperty("highlighter.cache",
+            Path.of(System.getProperty("user.home"), ".fny_editor", "tokens").toString()));
+    private static final long TOKEN_CACHE_BYTES = 256L << 20;
+    // Daha küçük dosyalar zaten hızla lex edilir
+    private static final int TOKEN_CACHE_MIN_CHARS = 256 * 1024;
+    // -Dhighlighter.latency=true: durum çubuğunda aşama sürelerinin p50/p99 değerleri gösterilir
+    private static final boolean SHOW_LATENCY = Boolean.getBoolean("highlighter.latency");
+    // Sekmelerin token ve sözdizimi ağacı önbellekleri için toplam bellek bütçesi;
+    // -Dhighlighter.memoryMB=N ile değiştirilebilir
+    private static final long MEMORY_BUDGET = Long.getLong("highlighter.memoryMB", 256) << 20;
+    private static final int MEMORY_CHECK_INTERVAL = 2000;
 
     static {
         TOKEN_COLORS.put(TokenType.KEYWORD, new Color(0, 0, 200));
@@ -35,17 +53,29 @@ public class SyntaxHighlighterGUI {
         TOKEN_COLORS.put(TokenType.COMMENT, Color.GRAY);
     }
 
-    private Timer highlightTimer;
-    private final Map<TokenType, Style> styleCache = new HashMap<>();
-    private final Lexer lexer = new Lexer();
-    private File currentFile = null;
+    // Bütün sekmelerin lex/parse geçişleri bu sınırlı, ortak havuzu paylaşır; farklı sekmelerin
+    // geçişleri aynı anda çalışabilir
+    private final ExecutorService highlightExecutor = Executors.newFixedThreadPool(
+            Math.max(2, Runtime.getRuntime().availableProcessors()),
+            Thread.ofPlatform().daemon().name("highlight-", 0).factory());
+    // Lex, parse, stil ve çizim süreleri; ayrıca JFR olayı olarak da kaydedilir
+    private final Latency latency = new Latency();
+    private final TokenCache tokenCache = new TokenCache(TOKEN_CACHE_DIR, TOKEN_CACHE_BYTES);
+    private final List<EditorTab> tabs = new ArrayList<>();
+
+    private JFrame frame;
+    private JTabbedPane tabbedPane;
+    private JLabel statusLabel;
+    private JLabel memoryLabel;
+    private JProgressBar loadProgress;
+    private JPanel loadPanel;
 
     public static void main(String[] args) {
         SwingUtilities.invokeLater(() -> new SyntaxHighlighterGUI().createAndShowGUI());
     }
 
     private void createAndShowGUI() {
-        JFrame frame = new JFrame("Real-Time Syntax Highlighter");
+        frame = new JFrame("Real-Time Syntax Highlighter");
         frame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
         frame.addWindowListener(new WindowAdapter() {
             public void windowClosing(WindowEvent e) {
@@ -57,74 +87,54 @@ public class SyntaxHighlighterGUI {
         JMenuBar menuBar = new JMenuBar();
         JMenu fileMenu = new JMenu("Dosya");
 
+        JMenuItem newItem = new JMenuItem("Yeni Sekme");
         JMenuItem openItem = new JMenuItem("Aç…");
         JMenuItem saveItem = new JMenuItem("Kaydet…");
+        JMenuItem closeItem = new JMenuItem("Sekmeyi Kapat");
         JMenuItem exitItem = new JMenuItem("Çıkış");
 
+        fileMenu.add(newItem);
         fileMenu.add(openItem);
         fileMenu.add(saveItem);
+        fileMenu.add(closeItem);
         fileMenu.addSeparator();
         fileMenu.add(exitItem);
         menuBar.add(fileMenu);
-        frame.setJMenuBar(menuBar);
-
-        // TextPane ve stiller
-        JTextPane textPane = new JTextPane();
-        textPane.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 14));
-        StyledDocument doc = textPane.getStyledDocument();
-
-        for (TokenType type : TOKEN_COLORS.keySet()) {
-            Style style = doc.addStyle(type.name(), null);
-            StyleConstants.setForeground(style, TOKEN_COLORS.get(type));
-            styleCache.put(type, style);
-        }
-
-        // Satır numarası paneli
-        LineNumberPanel lineNumbers = new LineNumberPanel(textPane);
 
-        // ScrollPane içine textPane ve satır numarası paneli
-        JScrollPane scrollPane = new JScrollPane(textPane);
-        scrollPane.setRowHeaderView(lineNumbers);
+        // Gezinme: imleçteki tanımlayıcının tanımına gitme ve kullanımlarını bulma
+        JMenu navigateMenu = new JMenu("Gezinme");
+        JMenuItem definitionItem = new JMenuItem("Tanıma Git");
+        definitionItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_F12, 0));
+        JMenuItem usagesItem = new JMenuItem("Kullanımları Bul");
+        usagesItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_F12, InputEvent.SHIFT_DOWN_MASK));
+        navigateMenu.add(definitionItem);
+        navigateMenu.add(usagesItem);
+        menuBar.add(navigateMenu);
+        frame.setJMenuBar(menuBar);
 
-        // Parse butonu ve durum etiketi
+        // Parse butonu ve durum etiketi; ikisi de seçili sekmeye bakar
         JButton parseButton = new JButton("Parse Et");
-        JLabel statusLabel = new JLabel(" ");
-
-        parseButton.addActionListener(e -> {
-            String code = textPane.getText();
-            List<Token> tokens = lexer.tokenize(code);
-            tokens.removeIf(t -> t.type == TokenType.WHITESPACE);
-
-            try {
-                Parser parser = new Parser(tokens);
-                parser.parseProgram();
-                statusLabel.setText("✅ Sözdizimi geçerli.");
-                statusLabel.setForeground(new Color(0, 128, 0));
-            } catch (RuntimeException ex) {
-                statusLabel.setText("❌ Hata: " + ex.getMessage());
-                statusLabel.setForeground(Color.RED);
-                // Hata token bilgisine göre vurgulama gerekirse burada eklenebilir
-            }
+        statusLabel = new JLabel(" ");
+
+        // Her sekme ayrı bir belge; metin parça tablosunda tutulur, lexer/parser kopyasız okur
+        tabbedPane = new JTabbedPane();
+        tabbedPane.addChangeListener(e -> {
+            EditorTab tab = currentTab();
+            if (tab == null) return;
+            // Önbellekleri boşaltılmış sekme tek geçişte yeniden kurulur
+            tab.activated();
+            showTabStatus(tab);
         });
 
-        // Belge değiştiğinde vurgulamayı erteleyerek çalıştır
-        textPane.getDocument().addDocumentListener(new DocumentListener() {
-            public void insertUpdate(DocumentEvent e) { scheduleHighlight(); }
-            public void removeUpdate(DocumentEvent e) { scheduleHighlight(); }
-            public void changedUpdate(DocumentEvent e) { scheduleHighlight(); }
-
-            private void scheduleHighlight() {
-                if (highlightTimer != null) {
-                    highlightTimer.restart();
-                } else {
-                    highlightTimer = new Timer(HIGHLIGHT_DELAY, ev -> {
-                        highlight(textPane);
-                        highlightTimer.stop();
-                    });
-                    highlightTimer.setRepeats(false);
-                    highlightTimer.start();
-                }
-            }
+        // Sekmenin sözdizimi ağacı her geçişte artımlı güncellenir, bütün hataları konumlarıyla
+        // tutar; belge son geçişten sonra değiştiyse sonraki geçiş bitince gösterilir
+        parseButton.addActionListener(e -> {
+            EditorTab tab = currentTab();
+            tab.whenChecked(tree -> {
+                List<Diagnostic> errors = tree.diagnostics();
+                tab.errorUnderliner.show(errors);
+                if (tab == currentTab()) showSyntaxStatus(statusLabel, tab.textPane.getDocument(), errors);
+            });
         });
 
         // Alt panel: önce parse/status, sonra renk legend
@@ -133,6 +143,20 @@ public class SyntaxHighlighterGUI {
         buttonStatusPanel.add(parseButton, BorderLayout.WEST);
         buttonStatusPanel.add(statusLabel, BorderLayout.CENTER);
 
+        // Dosya yüklenirken ilerleme çubuğu ve iptal butonu
+        loadProgress = new JProgressBar(0, 100);
+        loadProgress.setStringPainted(true);
+        JButton cancelLoadButton = new JButton("İptal");
+        cancelLoadButton.addActionListener(e -> {
+            EditorTab tab = currentTab();
+            if (tab != null && tab.loader != null) tab.loader.cancel();
+        });
+        loadPanel = new JPanel(new BorderLayout(5, 5));
+        loadPanel.add(loadProgress, BorderLayout.CENTER);
+        loadPanel.add(cancelLoadButton, BorderLayout.EAST);
+        loadPanel.setVisible(false);
+        buttonStatusPanel.add(loadPanel, BorderLayout.EAST);
+
         // Renk legend özelliklerini burada oluştur
         JPanel legendPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 5));
         legendPanel.setBackground(new Color(245, 245, 245));
@@ -164,50 +188,61 @@ public class SyntaxHighlighterGUI {
             legendPanel.add(nameLabel);
         }
 
+        // Sekmelerin bellek kullanımı; bütçe aşılınca en uzun süredir bakılmayanlar boşaltılır
+        memoryLabel = new JLabel(" ");
+        memoryLabel.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 11));
+        JPanel infoPanel = new JPanel(new GridLayout(0, 1));
+        infoPanel.add(memoryLabel);
+        new Timer(MEMORY_CHECK_INTERVAL, e -> enforceMemoryBudget()).start();
+
+        if (SHOW_LATENCY) {
+            JLabel latencyLabel = new JLabel(" ");
+            latencyLabel.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 11));
+            infoPanel.add(latencyLabel);
+            new Timer(1000, e -> latencyLabel.setText(latency.summary())).start();
+        }
+
         bottomPanel.add(buttonStatusPanel, BorderLayout.NORTH);
+        bottomPanel.add(infoPanel, BorderLayout.CENTER);
         bottomPanel.add(legendPanel, BorderLayout.SOUTH);
 
         // Ana pencere düzeni
         frame.getContentPane().setLayout(new BorderLayout(5, 5));
-        frame.getContentPane().add(scrollPane, BorderLayout.CENTER);
+        frame.getContentPane().add(tabbedPane, BorderLayout.CENTER);
         frame.getContentPane().add(bottomPanel, BorderLayout.SOUTH);
+        addTab();
 
         // === Menü Öğeleri İçin ActionListener’lar ===
+        newItem.addActionListener(e -> addTab());
+
         openItem.addActionListener(e -> {
             JFileChooser fileChooser = new JFileChooser();
             fileChooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("Java ve Metin Dosyaları", "java", "txt"));
             int result = fileChooser.showOpenDialog(frame);
             if (result == JFileChooser.APPROVE_OPTION) {
-                File file = fileChooser.getSelectedFile();
-                try {
-                    byte[] bytes = Files.readAllBytes(file.toPath());
-                    String content = new String(bytes, StandardCharsets.UTF_8);
-                    textPane.setText(content);
-                    currentFile = file;
-                    statusLabel.setText("📂 Açıldı: " + file.getName());
-                    statusLabel.setForeground(Color.BLACK);
-                } catch (IOException ex) {
-                    JOptionPane.showMessageDialog(frame,
-                            "Dosya okunurken bir hata oluştu:\n" + ex.getMessage(),
-                            "Hata",
-                            JOptionPane.ERROR_MESSAGE);
-                }
+                // Boş, adsız sekme yeniden kullanılır; yoksa dosya yeni sekmede açılır
+                EditorTab tab = currentTab();
+                if (tab.file != null || tab.loader != null || tab.content.length() > 1) tab = addTab();
+                openFile(tab, fileChooser.getSelectedFile());
             }
         });
 
         saveItem.addActionListener(e -> {
+            EditorTab tab = currentTab();
             JFileChooser fileChooser = new JFileChooser();
-            if (currentFile != null) {
-                fileChooser.setCurrentDirectory(currentFile.getParentFile());
-                fileChooser.setSelectedFile(currentFile);
+            if (tab.file != null) {
+                fileChooser.setCurrentDirectory(tab.file.getParentFile());
+                fileChooser.setSelectedFile(tab.file);
             }
             fileChooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("Java ve Metin Dosyaları", "java", "txt"));
             int result = fileChooser.showSaveDialog(frame);
             if (result == JFileChooser.APPROVE_OPTION) {
                 File file = fileChooser.getSelectedFile();
                 try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
-                    writer.write(textPane.getText());
-                    currentFile = file;
+                    tab.content.snapshot().writeTo(writer);
+                    tab.file = file;
+                    updateTitle(tab);
+                    storeTokens(tab, file.toPath());
                     statusLabel.setText("💾 Kaydedildi: " + file.getName());
                     statusLabel.setForeground(Color.BLACK);
                 } catch (IOException ex) {
@@ -219,6 +254,55 @@ public class SyntaxHighlighterGUI {
             }
         });
 
+        closeItem.addActionListener(e -> closeTab(currentTab()));
+
+        // Sembol dizini sözdizimi ağacında tutulur; belge son geçişten sonra değiştiyse
+        // sonraki geçiş bitince aranır
+        definitionItem.addActionListener(e -> {
+            EditorTab tab = currentTab();
+            int caret = tab.textPane.getCaretPosition();
+            tab.whenChecked(tree -> {
+                if (tab != currentTab()) return;
+                TokenBuffer tokens = tree.tokens();
+                int token = EditorTab.identifierAt(tokens, caret);
+                if (token < 0) {
+                    showNavigationStatus("İmleç bir tanımlayıcı üzerinde değil.");
+                    return;
+                }
+                int declaration = tree.declarationOf(token);
+                if (declaration < 0) {
+                    showNavigationStatus("Tanım bulunamadı: " + tokens.text(token));
+                    return;
+                }
+                tab.textPane.select(tokens.start(declaration), tokens.end(declaration));
+                tab.textPane.requestFocusInWindow();
+                int line = tab.textPane.getDocument().getDefaultRootElement().getElementIndex(tokens.start(declaration)) + 1;
+                showNavigationStatus("➡ Tanım: " + tokens.text(declaration) + " (satır " + line + ")");
+            });
+        });
+
+        usagesItem.addActionListener(e -> {
+            EditorTab tab = currentTab();
+            int caret = tab.textPane.getCaretPosition();
+            tab.whenChecked(tree -> {
+                if (tab != currentTab()) return;
+                TokenBuffer tokens = tree.tokens();
+                int token = EditorTab.identifierAt(tokens, caret);
+                if (token < 0) {
+                    showNavigationStatus("İmleç bir tanımlayıcı üzerinde değil.");
+                    return;
+                }
+                String name = tokens.text(token).toString();
+                long start = System.nanoTime();
+                int[] usages = tree.occurrences(name);
+                int declarations = tree.declarations(name).length;
+                double millis = (System.nanoTime() - start) / 1e6;
+                tab.showUsages(tokens, usages);
+                showNavigationStatus(String.format("🔎 %s: %d kullanım, %d tanım (%.2f ms)",
+                        name, usages.length, declarations, millis));
+            });
+        });
+
         exitItem.addActionListener(e -> {
             frame.dispatchEvent(new WindowEvent(frame, WindowEvent.WINDOW_CLOSING));
         });
@@ -228,80 +312,182 @@ public class SyntaxHighlighterGUI {
         frame.setVisible(true);
     }
 
-    private void highlight(JTextPane textPane) {
-        String code = textPane.getText();
-        StyledDocument doc = textPane.getStyledDocument();
-
-        // Önce tüm metni varsayılan stile döndür
-        doc.setCharacterAttributes(0, code.length(), textPane.getStyle(StyleContext.DEFAULT_STYLE), true);
-
-        // Tokenize ederek renkleri uygula
-        List<Token> tokens = lexer.tokenize(code);
-        for (Token token : tokens) {
-            if (token.type == TokenType.WHITESPACE) continue;
-            Style style = styleCache.getOrDefault(token.type, textPane.getStyle(StyleContext.DEFAULT_STYLE));
-            int start = Math.max(0, Math.min(token.start, doc.getLength()));
-            int len = Math.max(0, Math.min(token.value.length(), doc.getLength() - start));
-            if (len > 0) {
-                doc.setCharacterAttributes(start, len, style, true);
-            }
-        }
+    private EditorTab currentTab() {
+        int index = tabbedPane.getSelectedIndex();
+        return index < 0 || index >= tabs.size() ? null : tabs.get(index);
     }
-    private static class LineNumberPanel extends JPanel implements DocumentListener {
-        private final JTextPane textPane;
-        private final Font font = new Font(Font.MONOSPACED, Font.PLAIN, 12);
-        private final Color lineNumberColor = Color.DARK_GRAY;
-        private final int MARGIN = 5;
-
-        public LineNumberPanel(JTextPane tp) {
-            this.textPane = tp;
-            tp.getDocument().addDocumentListener(this);
-            setPreferredSize(new Dimension(40, Integer.MAX_VALUE));
-            setBackground(new Color(230, 230, 230));
-        }
 
-        @Override
-        protected void paintComponent(Graphics g) {
-            super.paintComponent(g);
-            Graphics2D g2 = (Graphics2D) g;
-            g2.setFont(font);
-            g2.setColor(lineNumberColor);
+    private EditorTab addTab() {
+        // Sözdizimi yazarken denetlenir; yalnızca değişen ifadeler yeniden parse edilir,
+        // bütün hatalar altı çizili gösterilir
+        EditorTab tab = new EditorTab(PAINT_MODE, TOKEN_COLORS, highlightExecutor, latency,
+                HIGHLIGHT_MIN_DELAY, HIGHLIGHT_MAX_DELAY, checked -> {
+                    // Dosya yüklenirken yükleme durumu gösterilsin
+                    if (checked.loader == null && checked == currentTab()) {
+                        showSyntaxStatus(statusLabel, checked.textPane.getDocument(), checked.errors);
+                    }
+                });
+        tabs.add(tab);
+        tabbedPane.addTab(tab.title(), tab.scrollPane);
+        tabbedPane.setSelectedIndex(tabs.size() - 1);
+        return tab;
+    }
 
-            StyledDocument doc = textPane.getStyledDocument();
-            Element root = doc.getDefaultRootElement();
-            FontMetrics fm = g2.getFontMetrics();
-            Rectangle clip = g2.getClipBounds();
+    private void closeTab(EditorTab tab) {
+        if (tab.loader != null) tab.loader.cancel();
+        int index = tabs.indexOf(tab);
+        tabs.remove(index);
+        tabbedPane.removeTabAt(index);
+        // Pencerede her zaman en az bir sekme kalır
+        if (tabs.isEmpty()) addTab();
+    }
 
-            int lineCount = root.getElementCount();
-            int xBase = getWidth() - MARGIN;
+    private void updateTitle(EditorTab tab) {
+        int index = tabs.indexOf(tab);
+        if (index >= 0) tabbedPane.setTitleAt(index, tab.title());
+    }
 
-            for (int i = 0; i < lineCount; i++) {
-                Element lineElem = root.getElement(i);
-                int startOffset = lineElem.getStartOffset();
+    private void openFile(EditorTab tab, File file) {
+        latency.reset();
+
+        // Dosya arka planda parça parça yüklenir; yükleme bitene kadar düzenleme kapalı
+        tab.textPane.setText("");
+        tab.textPane.setEditable(false);
+        tab.file = null;
+        tab.loadPercent = 0;
+        tabbedPane.setTitleAt(tabs.indexOf(tab), file.getName());
+
+        FileLoader loader = new FileLoader(file.toPath(), tab.textPane.getDocument());
+        tab.loader = loader;
+        if (tab.engine() != null) tab.engine().expectTokens(cachedTokens(file.toPath()));
+        showTabStatus(tab);
+        loader.start(new FileLoader.Listener() {
+            @Override
+            public void progress(int percent) {
+                tab.loadPercent = percent;
+                if (tab == currentTab()) loadProgress.setValue(percent);
+            }
 
-                try {
-                    Rectangle2D r = textPane.modelToView2D(startOffset);
-                    if (r == null) continue;
-                    double y = r.getY() + fm.getAscent();
+            @Override
+            public void finished(IOException error, boolean cancelled) {
+                // Bu arada sekmede başka bir dosya açılmaya başladıysa ona dokunma
+                if (tab.loader != loader) return;
+                tab.loader = null;
+                tab.textPane.setEditable(true);
+                if (tab == currentTab()) loadPanel.setVisible(false);
+
+                // Önbellekteki token'lar yalnızca dosyanın baytları tutuyorsa kullanılır
+                long checksum = error == null && !cancelled ? loader.checksum() : -1;
+                if (tab.engine() != null && !tab.engine().loaded(checksum) && checksum != -1) {
+                    storeTokens(tab, file.toPath());
+                }
 
-                    if (y + fm.getDescent() < clip.y) continue;
-                    if (y > clip.y + clip.height) break;
+                if (error != null) {
+                    tab.file = null;
+                    JOptionPane.showMessageDialog(frame,
+                            "Dosya okunurken bir hata oluştu:\n" + error.getMessage(),
+                            "Hata",
+                            JOptionPane.ERROR_MESSAGE);
+                } else if (cancelled) {
+                    // Yarım içerik asıl dosyanın üzerine kaydedilmesin
+                    tab.file = null;
+                    if (tab == currentTab()) statusLabel.setText("⛔ Açma iptal edildi: " + file.getName());
+                } else {
+                    tab.file = file;
+                    if (tab == currentTab()) statusLabel.setText("📂 Açıldı: " + file.getName());
+                }
+                updateTitle(tab);
+            }
+        });
+    }
 
-                    String lineNumber = String.valueOf(i + 1);
-                    int strWidth = fm.stringWidth(lineNumber);
-                    g2.drawString(lineNumber, xBase - strWidth, (float) y);
+    // Durum satırı ve yükleme çubuğu seçili sekmeyi gösterir
+    private void showTabStatus(EditorTab tab) {
+        loadPanel.setVisible(tab.loader != null);
+        if (tab.loader != null) {
+            loadProgress.setValue(tab.loadPercent);
+            statusLabel.setText("⏳ Açılıyor: " + tabbedPane.getTitleAt(tabs.indexOf(tab)));
+            statusLabel.setForeground(Color.BLACK);
+        } else {
+            showSyntaxStatus(statusLabel, tab.textPane.getDocument(), tab.errors);
+        }
+    }
 
-                } catch (BadLocationException ex) {
-                    // Hata durumunda atla
-                }
+    private void showNavigationStatus(String message) {
+        statusLabel.setText(message);
+        statusLabel.setForeground(Color.BLACK);
+    }
+
+    // Token ve ağaç önbellekleri bütçeyi aşarsa en uzun süredir bakılmayan sekmelerinkini boşaltır;
+    // seçili sekmeye ve geçişi süren sekmelere dokunulmaz
+    private void enforceMemoryBudget() {
+        long total = 0;
+        for (EditorTab tab : tabs) {
+            total += tab.cacheBytes();
+        }
+        if (total > MEMORY_BUDGET) {
+            List<EditorTab> leastRecent = new ArrayList<>(tabs);
+            leastRecent.remove(currentTab());
+            leastRecent.sort(Comparator.comparingLong(tab -> tab.lastActive));
+            for (EditorTab tab : leastRecent) {
+                if (total <= MEMORY_BUDGET) break;
+                long bytes = tab.cacheBytes();
+                if (tab.evictCaches()) total -= bytes - tab.cacheBytes();
             }
         }
 
-        @Override
-        public void insertUpdate(DocumentEvent e) { repaint(); }
-        @Override
-        public void removeUpdate(DocumentEvent e) { repaint(); }
-        @Override
-        public void changedUpdate(DocumentEvent e) { repaint(); }
+        long styles = 0;
+        for (int i = 0; i < tabs.size(); i++) {
+            EditorTab tab = tabs.get(i);
+            styles += tab.styleBytes();
+            tabbedPane.setToolTipTextAt(i, String.format("token %s · ağaç %s · stil %s",
+                    megabytes(tab.tokenBytes()), megabytes(tab.treeBytes()), megabytes(tab.styleBytes())));
+        }
+        EditorTab tab = currentTab();
+        memoryLabel.setText(String.format("Bellek: bu sekme token %s · ağaç %s · stil %s  │  tüm sekmeler %s / %s (+ stil %s)",
+                megabytes(tab.tokenBytes()), megabytes(tab.treeBytes()), megabytes(tab.styleBytes()),
+                megabytes(total), megabytes(MEMORY_BUDGET), megabytes(styles)));
+    }
+
+    private static String megabytes(long bytes) {
+        return String.format("%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+
+    // Önbellek yalnızca hızlandırır; okunamazsa dosya her zamanki gibi lex edilir
+    private TokenCache.Entry cachedTokens(Path path) {
+        try {
+            return tokenCache.lookup(path);
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    // Büyük dosyanın token'ları, bir geçiş lex edince arka planda önbelleğe yazılır
+    private void storeTokens(EditorTab tab, Path path) {
+        if (tab.engine() == null) return;
+        tab.engine().whenCommitted(tokens -> {
+            if (tokens.source().length() < TOKEN_CACHE_MIN_CHARS) return;
+            highlightExecutor.execute(() -> {
+                try {
+                    tokenCache.store(path, tokens);
+                } catch (IOException ex) {
+                    // Önbelleğe yazılamazsa dosya bir dahaki açılışta yine lex edilir
+                }
+            });
+        });
+    }
+
+    // İlk hata satır numarasıyla, kalanlar sayı olarak gösterilir
+    private static void showSyntaxStatus(JLabel statusLabel, Document doc, List<Diagnostic> errors) {
+        if (errors.isEmpty()) {
+            statusLabel.setText("✅ Sözdizimi geçerli.");
+            statusLabel.setForeground(new Color(0, 128, 0));
+        } else {
+            Diagnostic first = errors.get(0);
+            int line = doc.getDefaultRootElement().getElementIndex(first.start) + 1;
+            String more = errors.size() > 1 ? " (+" + (errors.size() - 1) + " hata daha)" : "";
+            statusLabel.setText("❌ Hata (satır " + line + "): " + first.message + more);
+            statusLabel.setForeground(Color.RED);
+        }
     }
 }
@@ -0,0 +1,238 @@
+package ui;
+
+import model.TokenBuffer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Token streams of files, kept in a directory so that reopening a large file need not lex it again.
+ *
+ * An entry is found by the file's path and is only used while the file's size and modification
+ * time are what they were when it was stored. It also carries a CRC32C of the file's bytes, which
+ * FileLoader computes while loading; the tokens are taken only if the two match, so a file
+ * changed without its modification time moving is lexed as usual. The lexer carries no state
+ * across tokens (a comment or string open at a line start is just the token spanning it), so the
+ * token arrays are all there is to store.
+ *
+ * Entry files hold a header followed by the arrays as TokenBuffer.writeTo() lays them out, and
+ * are memory-mapped when read. The header carries TokenBuffer.TAGS, so entries written by a build
+ * whose token types or kinds differ are ignored rather than read as other tokens. The directory
+ * is kept under a size limit by deleting the entries used least recently; using an entry sets
+ * its modification time.
+ */
+class TokenCache {
+    private static final int MAGIC = 0x544B4E46;
+    private static final int VERSION = 2;
+    private static final String SUFFIX = ".tokens";
+    // Magic, version, TokenBuffer.TAGS, file size, modification time, checksum, text length, token
+    // count, path length
+    private static final int HEADER = 48;
+
+    private final Path directory;
+    private final long maxBytes;
+
+    TokenCache(Path directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Tokens of a file as it was loaded.
+     */
+    static final class Entry {
+        // CRC32C of the file's bytes
+        final long checksum;
+        private final int textLength;
+        private final int tokenCount;
+        private final ByteBuffer tokens;
+
+        private Entry(long checksum, int textLength, int tokenCount, ByteBuffer tokens) {
+            this.checksum = checksum;
+            this.textLength = textLength;
+            this.tokenCount = tokenCount;
+            this.tokens = tokens;
+        }
+
+        /**
+         * The stored tokens over text, or null if they cannot be its tokens.
+         */
+        TokenBuffer tokens(CharSequence text) {
+            if (text.length() != textLength) return null;
+            return TokenBuffer.readFrom(text, tokens.duplicate().order(ByteOrder.LITTLE_ENDIAN), tokenCount);
+        }
+    }
+
+    /**
+     * The entry of file if it is still current, or null.
+     */
+    Entry lookup(Path file) throws IOException {
+        Path path = file.toAbsolutePath().normalize();
+        Path entryFile = entryFile(path);
+        if (!Files.isRegularFile(entryFile)) return null;
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(entryFile, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        byte[] pathBytes = path.toString().getBytes(StandardCharsets.UTF_8);
+        if (buffer.remaining() < HEADER + pathBytes.length
+                || buffer.getInt() != MAGIC || buffer.getInt() != VERSION || buffer.getInt() != TokenBuffer.TAGS
+                || buffer.getLong() != attributes.size()
+                || buffer.getLong() != attributes.lastModifiedTime().toMillis()) {
+            return null;
+        }
+        long checksum = buffer.getLong();
+        int textLength = buffer.getInt();
+        int tokenCount = buffer.getInt();
+        byte[] storedPath = new byte[buffer.getInt()];
+        if (storedPath.length != pathBytes.length) return null;
+        buffer.get(storedPath);
+        if (!Arrays.equals(storedPath, pathBytes)
+                || buffer.remaining() != 10L * tokenCount) {
+            return null;
+        }
+
+        Files.setLastModifiedTime(entryFile, FileTime.fromMillis(System.currentTimeMillis()));
+        return new Entry(checksum, textLength, tokenCount, buffer.slice());
+    }
+
+    /**
+     * Stores the tokens of file, whose text must be tokens.source(). Nothing is stored if the
+     * file's bytes are not that text in UTF-8 (it was changed again meanwhile, say), which is
+     * checked by reading the file again. Evicts the least recently used entries if the directory
+     * grows over its limit.
+     */
+    void store(Path file, TokenBuffer tokens) throws IOException {
+        Path path = file.toAbsolutePath().normalize();
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        CharSequence text = tokens.source();
+        CRC32C crc = new CRC32C();
+        if (encode(text, crc) != attributes.size() || checksum(path) != crc.getValue()) return;
+        // The file must not have changed while it was read
+        BasicFileAttributes read = Files.readAttributes(path, BasicFileAttributes.class);
+        if (read.size() != attributes.size() || !read.lastModifiedTime().equals(attributes.lastModifiedTime())) {
+            return;
+        }
+
+        byte[] pathBytes = path.toString().getBytes(StandardCharsets.UTF_8);
+        long length = HEADER + pathBytes.length + 10L * tokens.size();
+        Files.createDirectories(directory);
+        Path temporary = Files.createTempFile(directory, "tokens", ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE)) {
+                MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+                out.order(ByteOrder.LITTLE_ENDIAN);
+                out.putInt(MAGIC).putInt(VERSION).putInt(TokenBuffer.TAGS)
+                        .putLong(attributes.size())
+                        .putLong(attributes.lastModifiedTime().toMillis())
+                        .putLong(crc.getValue())
+                        .putInt(text.length())
+                        .putInt(tokens.size())
+                        .putInt(pathBytes.length)
+                        .put(pathBytes);
+                tokens.writeTo(out);
+                out.force();
+            }
+            Files.move(temporary, entryFile(path), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+        evict();
+    }
+
+    // Deletes the least recently used entries until the directory fits its limit
+    private void evict() throws IOException {
+        Map<Path, BasicFileAttributes> entries = new HashMap<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path entry : (Iterable<Path>) files::iterator) {
+                if (entry.getFileName().toString().endsWith(SUFFIX)) {
+                    entries.put(entry, Files.readAttributes(entry, BasicFileAttributes.class));
+                }
+            }
+        }
+        long total = 0;
+        for (BasicFileAttributes attributes : entries.values()) {
+            total += attributes.size();
+        }
+
+        List<Path> oldestFirst = new ArrayList<>(entries.keySet());
+        oldestFirst.sort(Comparator.comparing(entry -> entries.get(entry).lastModifiedTime()));
+        for (Path entry : oldestFirst) {
+            if (total <= maxBytes) break;
+            Files.deleteIfExists(entry);
+            total -= entries.get(entry).size();
+        }
+    }
+
+    private Path entryFile(Path path) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(path.toString().getBytes(StandardCharsets.UTF_8));
+            return directory.resolve(HexFormat.of().formatHex(digest, 0, 16) + SUFFIX);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    // CRC32C of the bytes of file
+    private static long checksum(Path file) throws IOException {
+        CRC32C crc = new CRC32C();
+        ByteBuffer bytes = ByteBuffer.allocate(64 * 1024);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (channel.read(bytes) >= 0) {
+                crc.update(bytes.flip());
+                bytes.clear();
+            }
+        }
+        return crc.getValue();
+    }
+
+    // Feeds the UTF-8 encoding of text to crc and returns its length in bytes
+    private static long encode(CharSequence text, CRC32C crc) {
+        CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+        ByteBuffer bytes = ByteBuffer.allocate(64 * 1024);
+        CharBuffer chars = CharBuffer.wrap(text);
+        long length = 0;
+        CoderResult result;
+        do {
+            result = encoder.encode(chars, bytes, true);
+            // Unpaired surrogates: the text cannot have been read from UTF-8
+            if (result.isError()) return -1;
+            if (result.isUnderflow()) encoder.flush(bytes);
+            bytes.flip();
+            length += bytes.remaining();
+            crc.update(bytes);
+            bytes.clear();
+        } while (result.isOverflow());
+        return length;
+    }
+}
@@ -0,0 +1,24 @@
+package ui;
+
+import javax.swing.text.DefaultEditorKit;
+import javax.swing.text.ViewFactory;
+import java.awt.Color;
+import java.util.Map;
+
+import model.TokenType;
+
+/**
+ * Editor kit for a plain document whose text is coloured by TokenView at paint time.
+ */
+class TokenEditorKit extends DefaultEditorKit {
+    private final ViewFactory viewFactory;
+
+    TokenEditorKit(PaintHighlighter highlighter, Map<TokenType, Color> tokenColors) {
+        this.viewFactory = elem -> new TokenView(elem, highlighter, tokenColors);
+    }
+
+    @Override
+    public ViewFactory getViewFactory() {
+        return viewFactory;
+    }
+}
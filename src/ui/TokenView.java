@@ -0,0 +1,77 @@
+package ui;
+
+import javax.swing.text.*;
+import java.awt.*;
+import java.util.Map;
+
+import model.TokenBuffer;
+import model.TokenType;
+
+/**
+ * PlainView that colours the text of each visible line from the highlighter's token stream while
+ * painting it. Consecutive tokens of the same colour, and whitespace between them, are drawn in
+ * one call.
+ */
+class TokenView extends PlainView {
+    private final PaintHighlighter highlighter;
+    // Colour per TokenType ordinal; null draws in the component's foreground
+    private final Color[] colors;
+
+    TokenView(Element elem, PaintHighlighter highlighter, Map<TokenType, Color> tokenColors) {
+        super(elem);
+        this.highlighter = highlighter;
+        this.colors = new Color[TokenType.values().length];
+        tokenColors.forEach((type, color) -> colors[type.ordinal()] = color);
+    }
+
+    @Override
+    protected float drawUnselectedText(Graphics2D g, float x, float y, int p0, int p1)
+            throws BadLocationException {
+        Color plain = getContainer().getForeground();
+        TokenBuffer tokens = highlighter.tokens();
+
+        int position = p0;
+        while (position < p1) {
+            int pieceEnd = Math.min(p1, highlighter.mappedEnd(position));
+            int base = highlighter.tokenOffset(position);
+            if (base < 0) {
+                x = drawRun(g, x, y, position, pieceEnd, plain);
+                position = pieceEnd;
+                continue;
+            }
+
+            int shift = position - base;
+            int runStart = position;
+            Color runColor = null;
+            for (int i = tokens.firstEndingAfter(base); i < tokens.size() && position < pieceEnd; i++) {
+                int end = Math.min(tokens.end(i) + shift, pieceEnd);
+                TokenType type = tokens.type(i);
+                if (type != TokenType.WHITESPACE) {
+                    Color color = colors[type.ordinal()] != null ? colors[type.ordinal()] : plain;
+                    if (runColor != null && !color.equals(runColor)) {
+                        x = drawRun(g, x, y, runStart, position, runColor);
+                        runStart = position;
+                    }
+                    runColor = color;
+                }
+                position = end;
+            }
+            // Past the last token (the stream may lag behind the document): draw the rest plainly
+            x = drawRun(g, x, y, runStart, position, runColor != null ? runColor : plain);
+            if (position < pieceEnd) {
+                x = drawRun(g, x, y, position, pieceEnd, plain);
+                position = pieceEnd;
+            }
+        }
+        return x;
+    }
+
+    private float drawRun(Graphics2D g, float x, float y, int start, int end, Color color)
+            throws BadLocationException {
+        if (start >= end) return x;
+        Segment text = getLineBuffer();
+        getDocument().getText(start, end - start, text);
+        g.setColor(color);
+        return Utilities.drawTabbedText(text, x, y, g, this, start);
+    }
+}
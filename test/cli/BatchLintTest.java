@@ -0,0 +1,99 @@
+package cli;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The command's contract: a JSON line per syntax error in file order, a single error line for a
+ * file or directory that fails, and exit status 0 when all is well, 1 for errors or failures and
+ * 2 for bad arguments.
+ */
+class BatchLintTest {
+    @TempDir
+    Path directory;
+
+    private final StringWriter out = new StringWriter();
+    private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+    @Test
+    void validFilesWriteNothingAndExitWithZero() throws Exception {
+        write("a.txt", "x = 1;\n");
+        write("sub/b.java", "int y = 2;\nprint(y);\n");
+
+        assertEquals(0, execute(directory.toString()));
+        assertEquals("", out.toString());
+        assertTrue(err().startsWith("2 dosya"), err());
+    }
+
+    @Test
+    void errorsAreWrittenInFileOrder() throws Exception {
+        Path b = write("b.txt", "int x = ;\ny = ;\n");
+        Path a = write("a.txt", "x = 1;\n");
+        Path c = write("sub/c.txt", "if (x { }\n");
+        write("skipped.md", "int = ;\n");
+
+        assertEquals(1, execute("--jobs", "1", directory.toString()));
+        List<String> lines = out.toString().lines().toList();
+        assertEquals(3, lines.size(), out.toString());
+        assertTrue(lines.get(0).startsWith("{\"file\":" + quoted(b) + ",\"line\":1,\"column\":9,\"start\":8,\"end\":9,"),
+                lines.get(0));
+        assertTrue(lines.get(1).startsWith("{\"file\":" + quoted(b) + ",\"line\":2,\"column\":5,"), lines.get(1));
+        assertTrue(lines.get(2).startsWith("{\"file\":" + quoted(c) + ",\"line\":1,\"column\":7,"), lines.get(2));
+        assertTrue(lines.stream().noneMatch(line -> line.contains(quoted(a))));
+        assertTrue(err().startsWith("3 dosya"), err());
+    }
+
+    @Test
+    void aFailureIsItsOwnLineAndExitsWithOne() throws Exception {
+        Path a = write("a.txt", "x = 1;\n");
+        // HTML cannot be written under a regular file, which has no extension to be linted itself
+        Path html = write("html", "");
+        Path missing = directory.resolve("missing");
+
+        assertEquals(1, execute("--html", html.toString(), missing.toString(), directory.toString()));
+        List<String> lines = out.toString().lines().toList();
+        assertEquals(2, lines.size(), out.toString());
+        assertTrue(lines.get(0).startsWith("{\"file\":" + quoted(missing) + ",\"error\":"), lines.get(0));
+        assertTrue(lines.get(1).startsWith("{\"file\":" + quoted(a) + ",\"error\":"), lines.get(1));
+        assertTrue(err().contains("2 başarısız"), err());
+    }
+
+    @Test
+    void badArgumentsExitWithTwo() throws Exception {
+        assertEquals(2, execute());
+        assertEquals(2, execute("--jobs", "many", directory.toString()));
+        assertEquals(2, execute(directory.toString(), "--ext"));
+        assertEquals("", out.toString());
+        assertTrue(err().startsWith("Kullanım: BatchLint [--html DİZİN]"), err());
+    }
+
+    private int execute(String... args) throws IOException, InterruptedException {
+        return BatchLint.execute(args, out, new PrintStream(err, true, StandardCharsets.UTF_8));
+    }
+
+    private String err() {
+        return err.toString(StandardCharsets.UTF_8);
+    }
+
+    private Path write(String name, String text) throws IOException {
+        Path file = directory.resolve(name);
+        Files.createDirectories(file.getParent());
+        return Files.writeString(file, text);
+    }
+
+    private static String quoted(Path file) {
+        return "\"" + file.toString().replace("\\", "\\\\") + "\"";
+    }
+}
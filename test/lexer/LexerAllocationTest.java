@@ -0,0 +1,69 @@
+package lexer;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * The sink-based tokenize allocates nothing per token: once warmed up, lexing a few hundred
+ * thousand characters allocates at most a small constant, whatever the input's length.
+ */
+class LexerAllocationTest {
+    // Bytes a whole tokenize call may allocate; the char[] overload wraps its input once
+    private static final long MAX_BYTES = 1024;
+    private static final int WARMUP = 30;
+
+    private static String text;
+    private static com.sun.management.ThreadMXBean threads;
+
+    private final Lexer lexer = new Lexer();
+    private long covered;
+    private final TokenSink sink = (type, kind, start, end) -> covered += end - start;
+
+    @BeforeAll
+    static void setUp() {
+        StringBuilder out = new StringBuilder();
+        for (int i = 0; out.length() < 400_000; i++) {
+            out.append("int x").append(i).append(" = 42; /* c */ if (a <= b && c != \"s\") { print(foo[i]); } // end\n");
+        }
+        text = out.toString();
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    @Test
+    void charSequenceInputAllocatesNothingPerToken() {
+        for (int i = 0; i < WARMUP; i++) {
+            lexer.tokenize(text, sink);
+        }
+        covered = 0;
+        long before = threads.getCurrentThreadAllocatedBytes();
+        lexer.tokenize(text, sink);
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+        assertEquals(text.length(), covered);
+        assertTrue(allocated < MAX_BYTES, "allocated " + allocated + " bytes");
+    }
+
+    @Test
+    void charArrayInputAllocatesNothingPerToken() {
+        char[] chars = text.toCharArray();
+        for (int i = 0; i < WARMUP; i++) {
+            lexer.tokenize(chars, 0, chars.length, sink);
+        }
+        covered = 0;
+        long before = threads.getCurrentThreadAllocatedBytes();
+        lexer.tokenize(chars, 0, chars.length, sink);
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+        assertEquals(chars.length, covered);
+        assertTrue(allocated < MAX_BYTES, "allocated " + allocated + " bytes");
+    }
+}
@@ -0,0 +1,98 @@
+package lexer;
+
+import model.TokenBuffer;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Relexing after an edit gives the tokens a fresh lex of the edited text gives, however many
+ * edits the shared storage has been through, and the TokenChange marks exactly what moved.
+ */
+class LexerTest {
+    private static final String[] LINES = {
+            "int x = 42;", "if (x == y && z) { print(\"a // b\"); }", "y = x * 3.5 - z; // c",
+            "/* one */ z = 1;", "while (y) { y = y - 1; }", "function int f(int a) { return a; }"
+    };
+    // Open and close comments and strings, merge operators, split and join identifiers
+    private static final String[] PIECES = {
+            "/*", "*/", "//", "\"", "\n", " ", "=", "&", "x", "int", "1", ";", "{", "}", "/* c */", "\"s\""
+    };
+
+    @Test
+    void randomEditsRelexLikeAFreshLex() {
+        Random random = new Random(5);
+        for (int round = 0; round < 12; round++) {
+            // Large enough for the token storage to be shared in segments
+            StringBuilder text = lines(random, round % 3 == 0 ? 20 : 2000);
+            Lexer lexer = new Lexer();
+            TokenBuffer previous = lexer.reset(text.toString());
+            for (int edit = 0; edit < 200; edit++) {
+                int offset = random.nextInt(text.length() + 1);
+                // Every few edits delete up to the end of the text
+                if (edit % 5 == 4) offset = Math.max(0, text.length() - 1 - random.nextInt(8));
+                int removed = edit % 5 == 4 ? text.length() - offset
+                        : random.nextInt(3) == 0 ? random.nextInt(Math.min(12, text.length() - offset) + 1) : 0;
+                String inserted = edit % 5 == 4 || removed > 0 && random.nextBoolean()
+                        ? "" : PIECES[random.nextInt(PIECES.length)];
+                text.replace(offset, offset + removed, inserted);
+                String source = text.toString();
+
+                TokenChange change = lexer.relex(source, offset, removed, inserted.length());
+                assertSame(new Lexer().tokenizeToBuffer(source), change.tokens, source);
+                assertChange(previous, change, offset, removed, inserted.length(), source);
+                previous = change.tokens;
+                if (text.length() < 200) text.append(lines(random, 50));
+                if (text.length() != source.length()) {
+                    change = lexer.relex(text.toString(), source.length(), 0, text.length() - source.length());
+                    assertSame(new Lexer().tokenizeToBuffer(text), change.tokens, text.toString());
+                    previous = change.tokens;
+                }
+            }
+        }
+    }
+
+    // Tokens outside the change are the old ones, those after it shifted; the change covers the edit
+    private static void assertChange(TokenBuffer old, TokenChange change, int offset, int removed, int inserted,
+                                     String source) {
+        TokenBuffer tokens = change.tokens;
+        int delta = inserted - removed;
+        assertTrue(change.fromIndex <= change.oldToIndex && change.fromIndex <= change.newToIndex, source);
+        assertEquals(old.size() - change.oldToIndex, tokens.size() - change.newToIndex, source);
+        for (int i = 0; i < change.fromIndex; i++) {
+            assertToken(old, i, tokens, i, 0, source);
+        }
+        if (change.fromIndex > 0) assertTrue(tokens.end(change.fromIndex - 1) <= offset, source);
+        for (int i = change.oldToIndex, j = change.newToIndex; i < old.size(); i++, j++) {
+            assertToken(old, i, tokens, j, delta, source);
+        }
+        if (change.newToIndex < tokens.size()) {
+            assertTrue(tokens.start(change.newToIndex) >= offset + inserted, source);
+        }
+    }
+
+    private static void assertSame(TokenBuffer expected, TokenBuffer actual, String source) {
+        assertEquals(expected.size(), actual.size(), source);
+        for (int i = 0; i < expected.size(); i++) {
+            assertToken(expected, i, actual, i, 0, source);
+        }
+    }
+
+    private static void assertToken(TokenBuffer expected, int i, TokenBuffer actual, int j, int delta, String source) {
+        assertEquals(expected.start(i) + delta, actual.start(j), source);
+        assertEquals(expected.end(i) + delta, actual.end(j), source);
+        assertEquals(expected.type(i), actual.type(j), source);
+        assertEquals(expected.kind(i), actual.kind(j), source);
+    }
+
+    private static StringBuilder lines(Random random, int count) {
+        StringBuilder out = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            out.append(LINES[random.nextInt(LINES.length)]).append('\n');
+        }
+        return out;
+    }
+}
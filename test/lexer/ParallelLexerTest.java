@@ -0,0 +1,75 @@
+package lexer;
+
+import model.TokenBuffer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * ParallelLexer makes the tokens the sequential Lexer makes, also where a block comment or an
+ * unclosed string runs across the cut between two chunks or swallows whole chunks.
+ */
+class ParallelLexerTest {
+    private static final String[] LINES = {
+            "int x = 42;", "if (x) { print(\"a // b\"); }", "y = x * 3.5 - z; // c", "/* one */ z = 1;",
+            "s = \"unclosed", "while (y) { y = y - 1; }", "function int f(int a) { return a; }", "/*", "*/"
+    };
+    private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+    @AfterAll
+    static void shutDown() {
+        POOL.shutdown();
+    }
+
+    @Test
+    void randomTextLexesLikeTheSequentialLexer() {
+        Random random = new Random(13);
+        for (int round = 0; round < 4; round++) {
+            String text = text(random, 3 * ParallelLexer.MIN_CHUNK);
+            assertSame(new Lexer().tokenizeToBuffer(text), new ParallelLexer(POOL).tokenize(text));
+        }
+    }
+
+    @Test
+    void aCommentSpanningChunksIsOneToken() {
+        Random random = new Random(17);
+        String text = text(random, ParallelLexer.MIN_CHUNK / 2) + "/*\n" + text(random, 2 * ParallelLexer.MIN_CHUNK)
+                + "*/\n" + text(random, ParallelLexer.MIN_CHUNK);
+        assertSame(new Lexer().tokenizeToBuffer(text), new ParallelLexer(POOL).tokenize(text));
+    }
+
+    @Test
+    void aRangeLexesLikeTheTokenLoop() {
+        Random random = new Random(19);
+        String text = text(random, 3 * ParallelLexer.MIN_CHUNK);
+        int from = text.indexOf('\n', 1000) + 1;
+        int to = text.length() - 5000;
+        TokenBuffer expected = new TokenBuffer(text, 16);
+        for (int position = from; position < to; ) {
+            position = Lexer.lexToken(text, position, text.length(), expected::add);
+        }
+        assertSame(expected, new ParallelLexer(POOL).tokenize(text, from, to));
+    }
+
+    private static void assertSame(TokenBuffer expected, TokenBuffer actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.start(i), actual.start(i), "start of token " + i);
+            assertEquals(expected.end(i), actual.end(i), "end of token " + i);
+            assertEquals(expected.type(i), actual.type(i), "type of token " + i);
+            assertEquals(expected.kind(i), actual.kind(i), "kind of token " + i);
+        }
+    }
+
+    private static String text(Random random, int length) {
+        StringBuilder out = new StringBuilder(length + 64);
+        while (out.length() < length) {
+            out.append(LINES[random.nextInt(LINES.length)]).append('\n');
+        }
+        return out.toString();
+    }
+}
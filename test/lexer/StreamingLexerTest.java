@@ -0,0 +1,127 @@
+package lexer;
+
+import model.TokenBuffer;
+import model.TokenKind;
+import model.TokenType;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * StreamingLexer makes the tokens Lexer makes of the whole text, wherever the chunks are cut:
+ * inside comments and strings, between the two characters of an operator, inside keywords.
+ */
+class StreamingLexerTest {
+    private static final String[] PIECES = {
+            "int", "function", "return", "while", "x", "whilex", "42", "3.5", " ", "\n", "\t", "==", "=", "&&",
+            "&", "||", "!=", "<=", "/", "//", "// c\n", "/*", "*/", "/* c */", "*", "\"", "\"s\"", "\\", "(", ")",
+            "{", "}", ";", "@", "ç"
+    };
+    private static final String[] CUTS = {
+            "/* comment * / ** */", "\"a string\" \"unclosed", "x==y a&&b c||d e!=f", "a//b\nc",
+            "function while return", "a / b /* c", "int x = 42;"
+    };
+
+    @Test
+    void randomChunksLexLikeTheWholeText() {
+        Random random = new Random(12);
+        for (int input = 0; input < 2000; input++) {
+            StringBuilder text = new StringBuilder();
+            for (int i = random.nextInt(40); i >= 0; i--) {
+                text.append(PIECES[random.nextInt(PIECES.length)]);
+            }
+            List<long[]> tokens = new ArrayList<>();
+            StreamingLexer lexer = new StreamingLexer(collect(tokens));
+            for (int at = 0; at < text.length(); ) {
+                int end = Math.min(text.length(), at + 1 + random.nextInt(20));
+                lexer.feed(CharBuffer.wrap(text, at, end));
+                at = end;
+            }
+            lexer.finish();
+            assertSame(text.toString(), tokens);
+        }
+    }
+
+    @Test
+    void everyCutLexesLikeTheWholeText() {
+        for (String text : CUTS) {
+            for (int cut = 0; cut <= text.length(); cut++) {
+                List<long[]> tokens = new ArrayList<>();
+                StreamingLexer lexer = new StreamingLexer(collect(tokens));
+                lexer.feed(CharBuffer.wrap(text, 0, cut));
+                lexer.feed(CharBuffer.wrap(text, cut, text.length()));
+                lexer.finish();
+                assertSame(text, tokens);
+            }
+            // A chunk per character cuts every keyword and operator
+            List<long[]> tokens = new ArrayList<>();
+            StreamingLexer lexer = new StreamingLexer(collect(tokens));
+            for (int i = 0; i < text.length(); i++) {
+                lexer.feed(CharBuffer.wrap(text, i, i + 1));
+            }
+            lexer.finish();
+            assertSame(text, tokens);
+        }
+    }
+
+    @Test
+    void aReaderLexesLikeTheWholeText() throws IOException {
+        Random random = new Random(21);
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 200_000) {
+            text.append(PIECES[random.nextInt(PIECES.length)]);
+        }
+        List<long[]> tokens = new ArrayList<>();
+        StreamingLexer.tokenize(new StringReader(text.toString()), collect(tokens));
+        assertSame(text.toString(), tokens);
+
+        tokens.clear();
+        StreamingLexer.tokenize(new TrickleReader(text.toString(), random), collect(tokens));
+        assertSame(text.toString(), tokens);
+    }
+
+    private static StreamingLexer.Sink collect(List<long[]> tokens) {
+        return (type, kind, start, end) -> tokens.add(new long[] {start, end, type.ordinal(), kind.ordinal()});
+    }
+
+    private static void assertSame(String text, List<long[]> tokens) {
+        TokenBuffer expected = new Lexer().tokenizeToBuffer(text);
+        assertEquals(expected.size(), tokens.size(), text);
+        for (int i = 0; i < expected.size(); i++) {
+            long[] token = tokens.get(i);
+            assertEquals(expected.start(i), token[0], text);
+            assertEquals(expected.end(i), token[1], text);
+            assertEquals(expected.type(i), TokenType.values()[(int) token[2]], text);
+            assertEquals(expected.kind(i), TokenKind.values()[(int) token[3]], text);
+        }
+    }
+
+    // Returns a few characters per read
+    private static class TrickleReader extends Reader {
+        private final Reader reader;
+        private final Random random;
+
+        TrickleReader(String text, Random random) {
+            this.reader = new StringReader(text);
+            this.random = random;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            return reader.read(buffer, offset, Math.min(length, 1 + random.nextInt(20)));
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package model;
+
+import lexer.Lexer;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * readFrom() takes back what writeTo() wrote for the same text, and nothing that could not be a
+ * token stream of it.
+ */
+class TokenBufferTest {
+    private static final String TEXT = "int x = 42; // c\nif (x) { print(\"s\"); }\n";
+
+    @Test
+    void readsBackWhatWasWritten() {
+        TokenBuffer tokens = new Lexer().tokenizeToBuffer(TEXT);
+        TokenBuffer read = TokenBuffer.readFrom(TEXT, written(tokens), tokens.size());
+        assertNotNull(read);
+        assertEquals(tokens.size(), read.size());
+        for (int i = 0; i < tokens.size(); i++) {
+            assertEquals(tokens.start(i), read.start(i));
+            assertEquals(tokens.end(i), read.end(i));
+            assertEquals(tokens.type(i), read.type(i));
+            assertEquals(tokens.kind(i), read.kind(i));
+        }
+    }
+
+    @Test
+    void rejectsGapsOverlapsAndAShortCover() {
+        TokenBuffer tokens = new Lexer().tokenizeToBuffer(TEXT);
+        int count = tokens.size();
+        // Ends are the second array of ints
+        assertNull(read(tokens, 4 * (count + 2), tokens.end(2) - 1));
+        assertNull(read(tokens, 4 * 3, tokens.start(3) + 1));
+        assertNull(read(tokens, 4 * 3, tokens.start(3) - 1));
+        assertNull(read(tokens, 4 * (2 * count - 1), TEXT.length() - 1));
+        assertNull(TokenBuffer.readFrom(TEXT + " ", written(tokens), count));
+    }
+
+    private static TokenBuffer read(TokenBuffer tokens, int at, int value) {
+        ByteBuffer data = written(tokens);
+        data.putInt(at, value);
+        return TokenBuffer.readFrom(TEXT, data, tokens.size());
+    }
+
+    private static ByteBuffer written(TokenBuffer tokens) {
+        ByteBuffer data = ByteBuffer.allocate(10 * tokens.size()).order(ByteOrder.LITTLE_ENDIAN);
+        tokens.writeTo(data);
+        return data.flip();
+    }
+}
@@ -0,0 +1,93 @@
+package parser;
+
+import lexer.Lexer;
+import model.TokenBuffer;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The Ast of a few statements, node by node: kinds in post-order, main tokens, token ranges,
+ * subtree sizes and the children walk, including a statement wrapped in ERROR after recovery.
+ */
+class AstTest {
+    private static final String TEXT = "int x = 1;\n"
+            + "if (x) { print(x); } else { x = 2; }\n"
+            + "f(x, 3);\n"
+            + "y = ;\n"
+            + "return x;\n";
+
+    private final TokenBuffer tokens = new Lexer().reset(TEXT);
+    private final Ast ast = new Parser(tokens).parseToAst();
+
+    @Test
+    void nodesAreInPostOrder() {
+        NodeKind[] kinds = {
+                NodeKind.LITERAL, NodeKind.DECLARATION,
+                NodeKind.NAME, NodeKind.NAME, NodeKind.PRINT, NodeKind.BLOCK,
+                NodeKind.LITERAL, NodeKind.ASSIGNMENT, NodeKind.BLOCK, NodeKind.IF,
+                NodeKind.NAME, NodeKind.NAME, NodeKind.LITERAL, NodeKind.CALL,
+                NodeKind.ASSIGNMENT, NodeKind.ERROR,
+                NodeKind.NAME, NodeKind.RETURN,
+                NodeKind.PROGRAM
+        };
+        String[] texts = {"1", "x", "x", "x", "print", "{", "2", "x", "{", "if", "f", "x", "3", "f", "y", "y", "x", "return", null};
+        int[] sizes = {1, 2, 1, 1, 2, 3, 1, 2, 3, 8, 1, 1, 1, 4, 1, 2, 1, 2, 19};
+        assertEquals(kinds.length, ast.size());
+        assertEquals(ast.size() - 1, ast.root());
+        for (int node = 0; node < ast.size(); node++) {
+            assertEquals(kinds[node], ast.kind(node), "kind of " + node);
+            assertEquals(texts[node], text(ast.token(node)), "token of " + node);
+            assertEquals(sizes[node], ast.subtreeSize(node), "subtree of " + node);
+        }
+    }
+
+    @Test
+    void tokenRangesCoverTheStatements() {
+        // The declaration with its ';', the if statement up to its last '}'
+        assertEquals("int x = 1;", text(ast.start(1), ast.end(1)));
+        assertEquals("if (x) { print(x); } else { x = 2; }", text(ast.start(9), ast.end(9)));
+        assertEquals("{ print(x); }", text(ast.start(5), ast.end(5)));
+        assertEquals("f(x, 3)", text(ast.start(13), ast.end(13)));
+        assertEquals("return x;", text(ast.start(17), ast.end(17)));
+        assertEquals(0, ast.start(ast.root()));
+    }
+
+    @Test
+    void childrenAreWalkedFirstToLast() {
+        assertArrayEquals(new int[] {1, 9, 13, 15, 17}, ast.children(ast.root()));
+        // Condition, then and else block
+        assertArrayEquals(new int[] {2, 5, 8}, ast.children(9));
+        // Callee, then the arguments
+        assertArrayEquals(new int[] {10, 11, 12}, ast.children(13));
+        assertEquals(3, ast.childCount(13));
+        assertEquals(12, ast.lastChild(13));
+        assertEquals(11, ast.previousSibling(13, 12));
+        assertEquals(-1, ast.previousSibling(13, 10));
+        assertEquals(-1, ast.lastChild(0));
+        assertArrayEquals(new int[0], ast.children(0));
+    }
+
+    @Test
+    void aStatementWithAnErrorIsWrapped() {
+        assertEquals(1, ast.diagnostics().size());
+        Diagnostic diagnostic = ast.diagnostics().get(0);
+        assertEquals(TEXT.indexOf("y = ;") + 4, diagnostic.start);
+        // What was parsed before the error, under an ERROR node spanning the statement
+        assertEquals(NodeKind.ERROR, ast.kind(15));
+        assertArrayEquals(new int[] {14}, ast.children(15));
+        assertEquals("y = ;", text(ast.start(15), ast.end(15)));
+        // The statement after it is parsed as usual
+        assertEquals(NodeKind.RETURN, ast.kind(17));
+    }
+
+    private String text(int token) {
+        return token == -1 ? null : TEXT.substring(tokens.start(token), tokens.end(token));
+    }
+
+    // Text of token range [start, end)
+    private String text(int start, int end) {
+        return TEXT.substring(tokens.start(start), tokens.end(end - 1));
+    }
+}
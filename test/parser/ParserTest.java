@@ -0,0 +1,79 @@
+package parser;
+
+import lexer.Lexer;
+import model.TokenBuffer;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Statements nested however deeply are parsed without recursion: on a thread with a small stack,
+ * the parser, the Ast and the SyntaxTree with its lookups all handle a hundred thousand levels.
+ */
+class ParserTest {
+    private static final int DEPTH = 100_000;
+    // Far less than a recursive descent through DEPTH levels needs
+    private static final long STACK = 256 * 1024;
+
+    @Test
+    void nestedBlocks() throws Throwable {
+        TokenBuffer tokens = lex("{".repeat(DEPTH) + "}".repeat(DEPTH));
+        onSmallStack(() -> {
+            assertEquals(List.of(), new Parser(tokens).parseWithRecovery());
+            Ast ast = new Parser(tokens).parseToAst();
+            assertEquals(DEPTH + 1, ast.size());
+            assertTrue(SyntaxTree.parse(tokens).isValid());
+        });
+    }
+
+    @Test
+    void nestedIfStatements() throws Throwable {
+        TokenBuffer tokens = lex("if (1) {\n".repeat(DEPTH) + "x = 1;\n" + "}\n".repeat(DEPTH));
+        onSmallStack(() -> {
+            assertEquals(List.of(), new Parser(tokens).parseWithRecovery());
+            SyntaxTree tree = SyntaxTree.parse(tokens);
+            assertTrue(tree.isValid());
+            assertEquals(1, tree.occurrences("x").length);
+        });
+    }
+
+    @Test
+    void unclosedBlocksReportTheirErrors() throws Throwable {
+        TokenBuffer tokens = lex("while (x) {".repeat(DEPTH) + "int y = ;");
+        onSmallStack(() -> {
+            List<Diagnostic> expected = new Parser(tokens).parseWithRecovery();
+            // The declaration's error, then the '}' missing at the end of input
+            assertEquals(2, expected.size());
+            assertEquals(expected.toString(), new Parser(tokens).parseToAst().diagnostics().toString());
+            SyntaxTree tree = SyntaxTree.parse(tokens);
+            assertEquals(expected.toString(), tree.diagnostics().toString());
+            assertEquals(expected.get(0).message, tree.error());
+            assertArrayEquals(new int[0], tree.declarations("x"));
+            assertEquals(DEPTH, tree.occurrences("x").length);
+        });
+    }
+
+    private static TokenBuffer lex(String text) {
+        Lexer lexer = new Lexer();
+        return lexer.reset(text);
+    }
+
+    private static void onSmallStack(Runnable check) throws Throwable {
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread thread = new Thread(null, () -> {
+            try {
+                check.run();
+            } catch (Throwable e) {
+                failure.set(e);
+            }
+        }, "parse", STACK);
+        thread.start();
+        thread.join();
+        if (failure.get() != null) throw failure.get();
+    }
+}
@@ -0,0 +1,66 @@
+package parser;
+
+import lexer.Lexer;
+import model.TokenBuffer;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * One parse reports every syntax error of a program, each at the token it was found at, and
+ * goes on with the statements after it; the SyntaxTree reports the same errors.
+ */
+class RecoveryTest {
+    private static final String TEXT = "int x = ;\n"
+            + "y = 1;\n"
+            + "if (x { z = 2; }\n"
+            + "print(x);\n"
+            + "}\n"
+            + "while (x) { int = 3; q = 4; }\n"
+            + "w = (1 + ;\n"
+            + "v = 5";
+
+    @Test
+    void everyErrorIsReportedAtItsToken() {
+        List<Diagnostic> diagnostics = new Parser(lex(TEXT)).parseWithRecovery();
+        assertEquals(6, diagnostics.size(), diagnostics.toString());
+        assertAt(diagnostics.get(0), "int x = ;", ";");
+        assertAt(diagnostics.get(1), "if (x {", "{");
+        assertAt(diagnostics.get(2), "print(x);\n}", "}");
+        assertAt(diagnostics.get(3), "int =", "=");
+        assertAt(diagnostics.get(4), "(1 + ;", ";");
+        // At the end of input the range is empty
+        assertEquals(TEXT.length(), diagnostics.get(5).start);
+        assertEquals(TEXT.length(), diagnostics.get(5).end);
+    }
+
+    @Test
+    void statementsAfterAnErrorAreParsed() {
+        TokenBuffer tokens = lex(TEXT);
+        SyntaxTree tree = SyntaxTree.parse(tokens);
+        assertEquals(new Parser(tokens).parseWithRecovery().toString(), tree.diagnostics().toString());
+        assertEquals(1, tree.occurrences("y").length);
+        assertEquals(1, tree.occurrences("q").length);
+        assertEquals(1, tree.declarations("x").length);
+    }
+
+    @Test
+    void parseProgramThrowsTheFirstError() {
+        TokenBuffer tokens = lex(TEXT);
+        RuntimeException thrown = assertThrows(RuntimeException.class, () -> new Parser(tokens).parseProgram());
+        assertEquals(new Parser(tokens).parseWithRecovery().get(0).message, thrown.getMessage());
+    }
+
+    private static void assertAt(Diagnostic diagnostic, String context, String token) {
+        int at = TEXT.indexOf(context) + context.length() - token.length();
+        assertEquals(at, diagnostic.start, diagnostic.toString());
+        assertEquals(at + token.length(), diagnostic.end, diagnostic.toString());
+    }
+
+    private static TokenBuffer lex(String text) {
+        return new Lexer().reset(text);
+    }
+}
@@ -0,0 +1,127 @@
+package parser;
+
+import lexer.Lexer;
+import lexer.TokenChange;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A reparsed tree is the tree a fresh parse of the edited tokens makes, and a reparse of a long
+ * statement list takes over the unchanged statements by sharing their chunks. The names of one
+ * document are not kept for another.
+ */
+class SyntaxTreeTest {
+    private static final String[] STATEMENTS = {
+            "x = a + 1;", "int y = 2;", "if (x) { y = 3; } else { y = 4; }", "while (y) { y = y - 1; }",
+            "function int f(int a) { return a; }", "print(x); // c", "/* c */ { int z = x; }",
+            "switch (x) { case 1: y = 1; break; default: y = 2; }"
+    };
+    private static final String[] PIECES = {
+            "{", "}", ";", "(", ")", "if", "else", "x", "=", "1", "\n", " ", "/*", "*/", "//", "while",
+            "function", "int", "case", ":", "\"", "+"
+    };
+
+    @Test
+    void randomEditsReparseLikeAFreshParse() {
+        Random random = new Random(7);
+        for (int program = 0; program < 200; program++) {
+            StringBuilder text = new StringBuilder();
+            for (int i = random.nextInt(30); i >= 0; i--) {
+                text.append(STATEMENTS[random.nextInt(STATEMENTS.length)]).append(random.nextBoolean() ? "\n" : " ");
+            }
+            String source = text.toString();
+            Lexer lexer = new Lexer();
+            lexer.reset(source);
+            SyntaxTree tree = SyntaxTree.parse(lexer.getTokens());
+            for (int edit = 0; edit < 20; edit++) {
+                int offset = random.nextInt(source.length() + 1);
+                int removed = random.nextInt(3) == 0 ? Math.min(source.length() - offset, random.nextInt(6)) : 0;
+                String inserted = removed > 0 && random.nextBoolean() ? "" : PIECES[random.nextInt(PIECES.length)];
+                source = source.substring(0, offset) + inserted + source.substring(offset + removed);
+                TokenChange change = lexer.relex(source, offset, removed, inserted.length());
+
+                tree = tree.reparse(change);
+                SyntaxTree fresh = SyntaxTree.parse(change.tokens);
+                assertEquals(fresh.diagnostics().toString(), tree.diagnostics().toString(), source);
+                if (fresh.root().complete) assertEquals(dump(fresh.root()), dump(tree.root()), source);
+            }
+        }
+    }
+
+    @Test
+    void aWideFileSharesTheUnchangedStatements() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 20_000; i++) {
+            text.append("function int f").append(i).append("(int a) { x = a + 1; }\n");
+        }
+        String source = text.toString();
+        Lexer lexer = new Lexer();
+        lexer.reset(source);
+        SyntaxTree tree = SyntaxTree.parse(lexer.getTokens());
+
+        int offset = source.indexOf("+ 1", source.length() / 2) + 3;
+        source = source.substring(0, offset) + "2" + source.substring(offset);
+        SyntaxTree next = tree.reparse(lexer.relex(source, offset, 0, 1));
+
+        assertTrue(next.isValid());
+        assertEquals(2, next.parsedStatements);
+        Children before = tree.root().children;
+        Children after = next.root().children;
+        assertEquals(before.size(), after.size());
+        // Only the chunk of the edited function is made again, and the ones next to it
+        int shared = 0;
+        for (int p = 0, q = 0; p < before.chunkCount() && q < after.chunkCount(); ) {
+            if (before.chunk(p) == after.chunk(q)) {
+                shared++;
+                p++;
+                q++;
+            } else if (before.first(p) < after.first(q)) {
+                p++;
+            } else {
+                q++;
+            }
+        }
+        assertTrue(shared >= before.chunkCount() - 3, shared + " of " + before.chunkCount());
+    }
+
+    @Test
+    void eachDocumentInternsItsOwnNames() {
+        long small = SyntaxTree.parse(new Lexer().reset("x = 1;")).memoryBytes();
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 10_000; i++) {
+            text.append("int name").append(i).append(" = 1;\n");
+        }
+        SyntaxTree large = SyntaxTree.parse(new Lexer().reset(text));
+        assertEquals(1, large.occurrences("name5").length);
+
+        SyntaxTree other = SyntaxTree.parse(new Lexer().reset("x = 1;"));
+        assertEquals(small, other.memoryBytes());
+        assertEquals(0, other.occurrences("name5").length);
+        // Reparsing a tree that has nothing to reuse starts a table of its own too
+        SyntaxTree empty = SyntaxTree.parse(new Lexer().reset(""));
+        Lexer emptyLexer = new Lexer();
+        emptyLexer.reset("");
+        assertEquals(small, empty.reparse(emptyLexer.relex("x = 1;", 0, 0, 6)).memoryBytes());
+    }
+
+    private static String dump(SyntaxTree.Node node) {
+        StringBuilder out = new StringBuilder();
+        dump(node, 0, out);
+        return out.toString();
+    }
+
+    private static void dump(SyntaxTree.Node node, int at, StringBuilder out) {
+        out.append('(').append(node.length).append(',').append(node.lookahead).append(node.complete ? "" : "!")
+                .append(node.errors);
+        Children children = node.children;
+        for (int i = 0; i < children.size(); i++) {
+            out.append(children.follows(i) ? " ~" : " ").append(at + children.start(i));
+            dump(children.node(i), at + children.start(i), out);
+        }
+        out.append(')');
+    }
+}
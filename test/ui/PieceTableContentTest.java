@@ -0,0 +1,86 @@
+package ui;
+
+import org.junit.jupiter.api.Test;
+
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Position;
+import javax.swing.text.Segment;
+import java.io.StringWriter;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * PieceTableContent reads the same as a StringBuilder edited alike, whether its pieces are chars,
+ * Latin-1 bytes or both, and shares a position between marks at one offset.
+ */
+class PieceTableContentTest {
+    private static final int LARGE = 40_000;
+
+    @Test
+    void latin1AndCharPiecesReadLikeAStringBuilder() throws Exception {
+        Random random = new Random(11);
+        PieceTableContent content = new PieceTableContent();
+        StringBuilder expected = new StringBuilder();
+        for (int round = 0; round < 300; round++) {
+            int offset = random.nextInt(expected.length() + 1);
+            if (round % 3 == 2 && expected.length() > 0) {
+                int length = random.nextInt(Math.min(expected.length() - offset, LARGE) + 1);
+                content.remove(offset, length);
+                expected.delete(offset, offset + length);
+            } else {
+                // Large inserts are stored apart, as bytes when they are Latin-1
+                String text = text(random, round % 5 == 0 ? LARGE : 20, round % 10 == 0);
+                content.insertString(offset, text);
+                expected.insert(offset, text);
+            }
+        }
+
+        PieceTableContent.Snapshot snapshot = content.snapshot();
+        assertEquals(expected.toString(), snapshot.toString());
+        for (int i = 0; i < expected.length(); i += 97) {
+            assertEquals(expected.charAt(i), snapshot.charAt(i));
+        }
+        StringWriter writer = new StringWriter();
+        snapshot.writeTo(writer);
+        assertEquals(expected.toString(), writer.toString());
+
+        Segment segment = new Segment();
+        segment.setPartialReturn(true);
+        StringBuilder read = new StringBuilder();
+        for (int at = 0; at < expected.length(); at += segment.count) {
+            content.getChars(at, expected.length() - at, segment);
+            read.append(segment);
+        }
+        assertEquals(expected.toString(), read.toString());
+    }
+
+    @Test
+    void marksAtOneOffsetShareAPosition() throws BadLocationException {
+        PieceTableContent content = new PieceTableContent();
+        content.insertString(0, "line one\nline two\n");
+        Position end = content.createPosition(9);
+        Position start = content.createPosition(9);
+        Position other = content.createPosition(10);
+        assertSame(end, start);
+        assertNotSame(end, other);
+
+        content.insertString(9, "x");
+        assertEquals(10, start.getOffset());
+        assertEquals(11, other.getOffset());
+        content.remove(5, 6);
+        assertEquals(5, start.getOffset());
+        assertEquals(5, other.getOffset());
+    }
+
+    private static String text(Random random, int length, boolean wide) {
+        StringBuilder out = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            int c = random.nextInt(40);
+            out.append(c == 0 ? '\n' : c == 1 ? 'ç' : wide && c == 2 ? 'ş' : (char) ('a' + c % 26));
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,108 @@
+package ui;
+
+import lexer.Lexer;
+import lexer.TokenChange;
+import model.TokenBuffer;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A document that only ever gets the runs update() reports as changed carries the styles of a
+ * fresh lex of its text, and the runs update() keeps are the ones a fresh lex makes.
+ */
+class StyleRunsTest {
+    private static final String[] PIECES = {
+            "x", "int", " ", "\n", "=", "==", "/*", "*/", "//", "\"", "42", "(", ")", "{", "}", ";", "ab cd",
+            "if (x) { y = \"s\"; }\n", "/* c */"
+    };
+    // Style of a character the highlighter has not written yet
+    private static final int UNSTYLED = -1;
+
+    @Test
+    void randomEditsRestyleLikeAFreshLex() {
+        Random random = new Random(3);
+        for (int round = 0; round < 100; round++) {
+            StringBuilder text = new StringBuilder();
+            Lexer lexer = new Lexer();
+            lexer.reset("");
+            StyleRuns runs = new StyleRuns();
+            int[] styles = new int[0];
+            for (int edit = 0; edit < 60; edit++) {
+                int offset = random.nextInt(text.length() + 1);
+                // Deletes near the end of the text, where the tail the diff shares is empty
+                if (edit % 7 == 6) offset = Math.max(0, text.length() - random.nextInt(4));
+                int removed = random.nextInt(3) == 0 ? random.nextInt(Math.min(8, text.length() - offset) + 1) : 0;
+                String inserted = removed > 0 && random.nextBoolean() ? "" : PIECES[random.nextInt(PIECES.length)];
+                text.replace(offset, offset + removed, inserted);
+                styles = edited(styles, offset, removed, inserted.length());
+
+                TokenChange change = lexer.relex(text.toString(), offset, removed, inserted.length());
+                StyleRuns.Diff diff = runs.update(change, offset, removed, inserted.length());
+                for (int i = 0; i < diff.changed.size(); i++) {
+                    Arrays.fill(styles, diff.changed.start(i), diff.changed.end(i), diff.changed.style(i));
+                }
+                runs = diff.runs;
+
+                TokenBuffer fresh = new Lexer().tokenizeToBuffer(text);
+                assertArrayEquals(styles(fresh, text.length()), styles, text.toString());
+                assertSameRuns(runs(fresh), runs, text.toString());
+            }
+        }
+    }
+
+    @Test
+    void anEditInsideOneTokenChangesOnlyItsRun() {
+        String text = "int x = 1;\n".repeat(1000);
+        Lexer lexer = new Lexer();
+        lexer.reset("");
+        StyleRuns runs = new StyleRuns().update(lexer.relex(text, 0, 0, text.length()), 0, 0, text.length()).runs;
+
+        int offset = text.length() / 2 + 4;
+        String edited = text.substring(0, offset) + "y" + text.substring(offset);
+        StyleRuns.Diff diff = runs.update(lexer.relex(edited, offset, 0, 1), offset, 0, 1);
+        assertEquals(1, diff.changed.size());
+        assertTrue(diff.changed.start(0) <= offset && diff.changed.end(0) > offset);
+        assertEquals(runs.size(), diff.runs.size());
+    }
+
+    // Styles of a document after the edit: removed characters go, inserted ones are unstyled
+    private static int[] edited(int[] styles, int offset, int removed, int inserted) {
+        int[] result = new int[styles.length - removed + inserted];
+        System.arraycopy(styles, 0, result, 0, offset);
+        Arrays.fill(result, offset, offset + inserted, UNSTYLED);
+        System.arraycopy(styles, offset + removed, result, offset + inserted, styles.length - offset - removed);
+        return result;
+    }
+
+    private static int[] styles(TokenBuffer tokens, int length) {
+        int[] styles = new int[length];
+        Arrays.fill(styles, UNSTYLED);
+        for (int i = 0; i < tokens.size(); i++) {
+            Arrays.fill(styles, tokens.start(i), tokens.end(i), tokens.type(i).ordinal());
+        }
+        return styles;
+    }
+
+    private static StyleRuns runs(TokenBuffer tokens) {
+        StyleRuns runs = new StyleRuns();
+        for (int i = 0; i < tokens.size(); i++) {
+            runs.add(tokens.start(i), tokens.end(i), tokens.type(i).ordinal());
+        }
+        return runs;
+    }
+
+    private static void assertSameRuns(StyleRuns expected, StyleRuns actual, String text) {
+        assertEquals(expected.size(), actual.size(), text);
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.start(i), actual.start(i), text);
+            assertEquals(expected.end(i), actual.end(i), text);
+            assertEquals(expected.style(i), actual.style(i), text);
+        }
+    }
+}
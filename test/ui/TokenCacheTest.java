@@ -0,0 +1,54 @@
+package ui;
+
+import lexer.Lexer;
+import model.TokenBuffer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * An entry is stored only for the text the file holds, and read back as the tokens it stored.
+ */
+class TokenCacheTest {
+    private static final String TEXT = "int x = 42; // ç\nif (x) { print(\"s\"); }\n";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void storesAndLooksUpTheTokensOfAFile() throws IOException {
+        Path file = write("a.txt", TEXT);
+        TokenCache cache = new TokenCache(directory.resolve("cache"), 1 << 20);
+        TokenBuffer tokens = new Lexer().tokenizeToBuffer(TEXT);
+        cache.store(file, tokens);
+
+        TokenCache.Entry entry = cache.lookup(file);
+        assertNotNull(entry);
+        TokenBuffer read = entry.tokens(TEXT);
+        assertNotNull(read);
+        assertEquals(tokens.size(), read.size());
+    }
+
+    @Test
+    void aFileChangedToOtherBytesOfTheSameSizeIsNotStored() throws IOException {
+        Path file = write("a.txt", TEXT);
+        TokenBuffer tokens = new Lexer().tokenizeToBuffer(TEXT);
+        write("a.txt", TEXT.replace("42", "43"));
+
+        TokenCache cache = new TokenCache(directory.resolve("cache"), 1 << 20);
+        cache.store(file, tokens);
+        assertNull(cache.lookup(file));
+    }
+
+    private Path write(String name, String text) throws IOException {
+        return Files.write(directory.resolve(name), text.getBytes(StandardCharsets.UTF_8));
+    }
+}